@@ -0,0 +1,66 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.DocumentException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import scratch.UCERF3.simulatedAnnealing.ThreadedSimulatedAnnealing;
+import scratch.UCERF3.simulatedAnnealing.completion.IterationCompletionCriteria;
+
+/**
+ * Measures annealing throughput in perturbations per second. Each invocation
+ * anneals a fixed number of iterations from the initial solution, synchronising
+ * the threads every SYNC_ITERATIONS iterations. The score is the throughput of
+ * all threads together; divide it by the threads parameter for the throughput
+ * per thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnnealingBenchmark {
+
+	static final long SYNC_ITERATIONS = 10_000;
+	static final long ITERATIONS = 200_000;
+
+	@Param({ BenchmarkInversions.CRUSTAL, BenchmarkInversions.HIKURANGI })
+	public String ruptureSet;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	private NZSHM22_InversionInputs inputs;
+
+	@Setup
+	public void setUp() throws IOException, DocumentException {
+		inputs = BenchmarkInversions.createRunner(ruptureSet).generateInputs();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation((int) ITERATIONS)
+	public double[] anneal() {
+		double[] initialState = Arrays.copyOf(inputs.getInitialSolution(), inputs.getInitialSolution().length);
+		ThreadedSimulatedAnnealing tsa = new ThreadedSimulatedAnnealing(inputs.getA(), inputs.getD(), initialState,
+				0, inputs.getA_ineq(), inputs.getD_ineq(), inputs.getWaterLevelRates(), threads,
+				new IterationCompletionCriteria(SYNC_ITERATIONS));
+		tsa.setConstraintRanges(inputs.getConstraintRowRanges());
+		tsa.iterate(new IterationCompletionCriteria(ITERATIONS));
+		return tsa.getBestSolution();
+	}
+}
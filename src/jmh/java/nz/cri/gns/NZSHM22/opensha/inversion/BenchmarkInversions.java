@@ -0,0 +1,92 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.dom4j.DocumentException;
+
+import nz.cri.gns.NZSHM22.opensha.enumTreeBranches.NZSHM22_FaultModels;
+import nz.cri.gns.NZSHM22.opensha.ruptures.NZSHM22_AbstractRuptureSetBuilder;
+import nz.cri.gns.NZSHM22.opensha.ruptures.NZSHM22_AzimuthalRuptureSetBuilder;
+import nz.cri.gns.NZSHM22.opensha.ruptures.NZSHM22_SubductionRuptureSetBuilder;
+import scratch.UCERF3.enumTreeBranches.ScalingRelationships;
+import scratch.UCERF3.enumTreeBranches.SlipAlongRuptureModels;
+import scratch.UCERF3.utils.FaultSystemIO;
+
+/**
+ * The representative rupture sets and inversion configurations that the
+ * inversion benchmarks run on.
+ *
+ * Rupture sets are built on first use and kept in build/jmh-rupture-sets, or
+ * in the directory given by the nzshm22.jmh.ruptureSetDir system property, so
+ * that pre-built rupture sets can be used by naming them crustal.zip and
+ * hikurangi.zip.
+ */
+class BenchmarkInversions {
+
+	public static final String CRUSTAL = "crustal";
+	public static final String HIKURANGI = "hikurangi";
+
+	static File getRuptureSetFile(String name) throws IOException, DocumentException {
+		File dir = new File(System.getProperty("nzshm22.jmh.ruptureSetDir", "build/jmh-rupture-sets"));
+		File file = new File(dir, name + ".zip");
+		if (!file.exists()) {
+			System.out.println("Building benchmark rupture set " + file);
+			if (!dir.exists() && !dir.mkdirs()) {
+				throw new IOException("Could not create " + dir);
+			}
+			FaultSystemIO.writeRupSet(createBuilder(name).buildRuptureSet(), file);
+		}
+		return file;
+	}
+
+	static NZSHM22_AbstractRuptureSetBuilder createBuilder(String name) {
+		switch (name) {
+		case CRUSTAL:
+			// crustal CFM 0.9 without the TVZ
+			return new NZSHM22_AzimuthalRuptureSetBuilder()
+					.setMaxJumpDistance(5)
+					.setThinningFactor(0.1)
+					.setFaultModel(NZSHM22_FaultModels.CFM_0_9_SANSTVZ_D90)
+					.setScalingRelationship(ScalingRelationships.TMG_CRU_2017)
+					.setSlipAlongRuptureModel(SlipAlongRuptureModels.TAPERED);
+		case HIKURANGI:
+			// Hikurangi with 30km tiles
+			return ((NZSHM22_SubductionRuptureSetBuilder) new NZSHM22_SubductionRuptureSetBuilder()
+					.setFaultModel(NZSHM22_FaultModels.SBD_0_1_HKR_KRM_30))
+					.setDownDipAspectRatio(2, 5, 2)
+					.setDownDipPositionCoarseness(0.005)
+					.setDownDipSizeCoarseness(0.005)
+					.setDownDipMinFill(0.3)
+					.setScalingRelationship(ScalingRelationships.TMG_SUB_2017)
+					.setSlipAlongRuptureModel(SlipAlongRuptureModels.UNIFORM);
+		default:
+			throw new IllegalArgumentException("Unknown benchmark rupture set " + name);
+		}
+	}
+
+	/**
+	 * Creates a runner for the rupture set with the same constraint set up as the
+	 * runners' main methods, and calls configure() on it.
+	 */
+	static NZSHM22_AbstractInversionRunner createRunner(String name) throws IOException, DocumentException {
+		File ruptureSet = getRuptureSetFile(name);
+		switch (name) {
+		case CRUSTAL:
+			return new NZSHM22_CrustalInversionRunner()
+					.setRuptureSetFile(ruptureSet)
+					.setGutenbergRichterMFDWeights(100.0, 1000.0)
+					.setSlipRateConstraint("BOTH", 100, 10)
+					.configure();
+		case HIKURANGI:
+			return ((NZSHM22_SubductionInversionRunner) new NZSHM22_SubductionInversionRunner()
+					.setRuptureSetFile(ruptureSet)
+					.setGutenbergRichterMFDWeights(100.0, 1000.0)
+					.setSlipRateConstraint("BOTH", 100, 10))
+					.setGutenbergRichterMFD(2.4, 1.3, 7.75)
+					.configure();
+		default:
+			throw new IllegalArgumentException("Unknown benchmark rupture set " + name);
+		}
+	}
+}
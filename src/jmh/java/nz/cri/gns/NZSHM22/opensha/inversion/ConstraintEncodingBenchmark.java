@@ -0,0 +1,69 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.DocumentException;
+import org.opensha.sha.earthquake.faultSysSolution.inversion.constraints.InversionConstraint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix2D;
+
+/**
+ * Measures encoding each constraint type into its own matrix, which is the part
+ * of generating the inversion inputs that depends on the constraint set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConstraintEncodingBenchmark {
+
+	@Param({ BenchmarkInversions.CRUSTAL, BenchmarkInversions.HIKURANGI })
+	public String ruptureSet;
+
+	/**
+	 * The simple class name of the constraint to encode, without the
+	 * InversionConstraint suffix. All of these are set up for both rupture sets.
+	 */
+	@Param({ "SlipRate", "MFDEquality", "MFDInequality" })
+	public String constraintType;
+
+	private int numRuptures;
+	private InversionConstraint constraint;
+
+	@Setup
+	public void setUp() throws IOException, DocumentException {
+		NZSHM22_AbstractInversionRunner runner = BenchmarkInversions.createRunner(ruptureSet);
+		numRuptures = runner.rupSet.getNumRuptures();
+		for (InversionConstraint candidate : runner.getInversionInputGenerator().getConstraints()) {
+			if (candidate.getClass().getSimpleName().equals(constraintType + "InversionConstraint")) {
+				constraint = candidate;
+			}
+		}
+		if (constraint == null) {
+			throw new IllegalStateException("No " + constraintType + " constraint for " + ruptureSet);
+		}
+	}
+
+	@Benchmark
+	public DoubleMatrix2D encodeConstraint() {
+		DoubleMatrix2D A = new SparseDoubleMatrix2D(constraint.getNumRows(), numRuptures);
+		double[] d = new double[constraint.getNumRows()];
+		constraint.encode(A, d, 0);
+		return A;
+	}
+}
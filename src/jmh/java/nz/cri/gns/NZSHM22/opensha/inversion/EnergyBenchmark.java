@@ -0,0 +1,84 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.DocumentException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+
+/**
+ * Measures a full energy evaluation on the column compressed inputs: the
+ * synthetics A*x, the squared misfits against d, and the same for the
+ * inequality constraints where only positive misfits count. This is what the
+ * annealer pays whenever it recalculates the energy of a solution from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EnergyBenchmark {
+
+	@Param({ BenchmarkInversions.CRUSTAL, BenchmarkInversions.HIKURANGI })
+	public String ruptureSet;
+
+	private NZSHM22_InversionInputs inputs;
+	private DoubleMatrix1D solution;
+	private DoubleMatrix1D synthetics;
+	private DoubleMatrix1D syntheticsIneq;
+
+	@Setup
+	public void setUp() throws IOException, DocumentException {
+		inputs = BenchmarkInversions.createRunner(ruptureSet).generateInputs();
+
+		// a fixed random solution, so that all columns of A take part
+		Random random = new Random(42);
+		double[] rates = new double[inputs.getA().columns()];
+		for (int r = 0; r < rates.length; r++) {
+			rates[r] = random.nextDouble() * 1e-4;
+		}
+		solution = new DenseDoubleMatrix1D(rates);
+		synthetics = new DenseDoubleMatrix1D(inputs.getA().rows());
+		if (inputs.getA_ineq() != null) {
+			syntheticsIneq = new DenseDoubleMatrix1D(inputs.getA_ineq().rows());
+		}
+	}
+
+	@Benchmark
+	public double energy() {
+		double energy = misfitEnergy(inputs.getA(), inputs.getD(), synthetics, false);
+		if (syntheticsIneq != null) {
+			energy += misfitEnergy(inputs.getA_ineq(), inputs.getD_ineq(), syntheticsIneq, true);
+		}
+		return energy;
+	}
+
+	private double misfitEnergy(DoubleMatrix2D A, double[] d, DoubleMatrix1D syn, boolean inequality) {
+		A.zMult(solution, syn);
+		double energy = 0;
+		for (int row = 0; row < d.length; row++) {
+			double misfit = syn.getQuick(row) - d[row];
+			if (inequality && misfit < 0) {
+				continue;
+			}
+			energy += misfit * misfit;
+		}
+		return energy;
+	}
+}
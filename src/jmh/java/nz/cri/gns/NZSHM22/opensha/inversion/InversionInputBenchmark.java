@@ -0,0 +1,66 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.DocumentException;
+import org.opensha.sha.earthquake.faultSysSolution.inversion.InversionInputGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Measures generating the complete inversion inputs and column compressing
+ * them. Each of these runs for seconds on a full rupture set, so every
+ * invocation is timed on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InversionInputBenchmark {
+
+	@Param({ BenchmarkInversions.CRUSTAL, BenchmarkInversions.HIKURANGI })
+	public String ruptureSet;
+
+	private InversionInputGenerator inputGenerator;
+
+	@Setup(Level.Trial)
+	public void setUpTrial() throws IOException, DocumentException {
+		inputGenerator = BenchmarkInversions.createRunner(ruptureSet).getInversionInputGenerator();
+	}
+
+	/**
+	 * columnCompress() replaces the matrices, so they are regenerated before each
+	 * measurement.
+	 */
+	@Setup(Level.Iteration)
+	public void setUpIteration() {
+		inputGenerator.generateInputs(false);
+	}
+
+	@Benchmark
+	public DoubleMatrix2D generateInputs() {
+		inputGenerator.generateInputs(false);
+		return inputGenerator.getA();
+	}
+
+	@Benchmark
+	public DoubleMatrix2D columnCompress() {
+		inputGenerator.columnCompress();
+		return inputGenerator.getA();
+	}
+}
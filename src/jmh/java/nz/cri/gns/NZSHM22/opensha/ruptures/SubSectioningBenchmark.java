@@ -0,0 +1,77 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.DocumentException;
+import org.opensha.sha.faultSurface.FaultSection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Preconditions;
+
+import nz.cri.gns.NZSHM22.opensha.enumTreeBranches.NZSHM22_FaultModels;
+import nz.cri.gns.NZSHM22.opensha.util.FaultSectionList;
+
+/**
+ * Compares serial and parallel subsectioning of the crustal fault model. The
+ * trial setup checks that both paths produce identical subsections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SubSectioningBenchmark {
+
+	@Param({ "0.5", "0.1" })
+	public double maxSubSectionLength;
+
+	private FaultSectionList parents;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, DocumentException {
+		parents = new FaultSectionList();
+		NZSHM22_FaultModels.CFM_0_9_SANSTVZ_D90.fetchFaultSections(parents);
+
+		FaultSectionList serial = NZSHM22_SubSectioning.buildSubSectionsSerially(parents, maxSubSectionLength);
+		FaultSectionList parallel = NZSHM22_SubSectioning.buildSubSections(parents, maxSubSectionLength);
+		Preconditions.checkState(serial.size() == parallel.size(), "Subsection counts differ");
+		for (int s = 0; s < serial.size(); s++) {
+			FaultSection expected = serial.get(s);
+			FaultSection actual = parallel.get(s);
+			Preconditions.checkState(expected.getSectionId() == actual.getSectionId()
+					&& expected.getParentSectionId() == actual.getParentSectionId()
+					&& expected.getSectionName().equals(actual.getSectionName())
+					&& expected.getFaultTrace().equals(actual.getFaultTrace()), "Subsection %s differs", s);
+		}
+	}
+
+	@Benchmark
+	public FaultSectionList serial() {
+		return NZSHM22_SubSectioning.buildSubSectionsSerially(parents, maxSubSectionLength);
+	}
+
+	@Benchmark
+	public FaultSectionList parallel() {
+		return NZSHM22_SubSectioning.buildSubSections(parents, maxSubSectionLength);
+	}
+
+	@Benchmark
+	public FaultSectionList fetchFaultSections() throws IOException, DocumentException {
+		FaultSectionList sections = new FaultSectionList();
+		NZSHM22_FaultModels.CFM_0_9_SANSTVZ_D90.fetchFaultSections(sections);
+		return sections;
+	}
+}
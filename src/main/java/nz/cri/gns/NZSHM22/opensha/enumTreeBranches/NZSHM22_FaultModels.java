@@ -56,6 +56,8 @@ public enum NZSHM22_FaultModels implements LogicTreeBranchNode<NZSHM22_FaultMode
 	private final int id;
 
 	private Map<String, List<Integer>> namedFaultsMapAlt;
+	// parsed crustal parent sections, shared by all builds in this JVM
+	private volatile List<FaultSection> crustalSections;
 
 	private NZSHM22_FaultModels(String modelName, String fileName) {
 		this.modelName = modelName;
@@ -85,15 +87,31 @@ public enum NZSHM22_FaultModels implements LogicTreeBranchNode<NZSHM22_FaultMode
 	 * @throws DocumentException
 	 */
 	public void fetchFaultSections(FaultSectionList sections) throws IOException, DocumentException {
-		try (InputStream in = getStream(fileName)) {
-			if (crustal) {
-				sections.addAll(FaultModels.loadStoredFaultSections(XMLUtils.loadDocument(in)));
-			} else {
+		if (crustal) {
+			for (FaultSection section : getCrustalSections()) {
+				// sections are copied as callers may modify them
+				sections.add(section.clone());
+			}
+		} else {
+			try (InputStream in = getStream(fileName)) {
 				DownDipSubSectBuilder.loadFromStream(sections, id, modelName, in);
 			}
 		}
 	}
 
+	protected List<FaultSection> getCrustalSections() throws IOException, DocumentException {
+		if (crustalSections == null) {
+			synchronized (this) {
+				if (crustalSections == null) {
+					try (InputStream in = getStream(fileName)) {
+						crustalSections = FaultModels.loadStoredFaultSections(XMLUtils.loadDocument(in));
+					}
+				}
+			}
+		}
+		return crustalSections;
+	}
+
 	/**
 	 * This returns a mapping between a named fault (String keys) and the sections
 	 * included in the named fault (sections IDs ids). name.
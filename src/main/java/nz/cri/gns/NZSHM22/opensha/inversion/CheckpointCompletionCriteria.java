@@ -0,0 +1,112 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import scratch.UCERF3.simulatedAnnealing.ConstraintRange;
+import scratch.UCERF3.simulatedAnnealing.ThreadedSimulatedAnnealing;
+import scratch.UCERF3.simulatedAnnealing.completion.CompletionCriteria;
+
+/**
+ * A completion criteria that never completes, but writes a checkpoint of the
+ * annealer every n sync intervals. The annealer checks its completion criteria
+ * once per sync, so this is where the threads are in a consistent state.
+ * 
+ * A compound criteria stops at the first satisfied criteria, so this must come
+ * before the criteria that end the inversion, and finish() must be called
+ * after the inversion to checkpoint the final state.
+ */
+public class CheckpointCompletionCriteria implements CompletionCriteria {
+
+	private final File checkpointFile;
+	private final int syncIntervals;
+	private final long elapsedOffsetMillis;
+	private ThreadedSimulatedAnnealing tsa;
+	private int syncs = 0;
+	private long lastMillis;
+	private long lastIter;
+	private long lastPerturbsKept;
+	private double[] lastEnergy;
+	private boolean lastWritten = false;
+
+	/**
+	 * @param checkpointFile      the file to write, it is overwritten with every
+	 *                            checkpoint
+	 * @param syncIntervals       the number of sync intervals between checkpoints
+	 * @param elapsedOffsetMillis time already spent in previous runs when
+	 *                            resuming, 0 otherwise
+	 */
+	public CheckpointCompletionCriteria(File checkpointFile, int syncIntervals, long elapsedOffsetMillis) {
+		this.checkpointFile = checkpointFile;
+		this.syncIntervals = syncIntervals;
+		this.elapsedOffsetMillis = elapsedOffsetMillis;
+	}
+
+	/**
+	 * Sets the annealer to take the best solution and energies from. No
+	 * checkpoints are written until this is set.
+	 *
+	 * @param tsa the annealer
+	 */
+	public void setAnnealer(ThreadedSimulatedAnnealing tsa) {
+		this.tsa = tsa;
+	}
+
+	@Override
+	public boolean isSatisfied(StopWatch watch, long iter, double[] energy, long numPerturbsKept, int numNonZero,
+			double[] misfits, double[] misfits_ineq, List<ConstraintRange> constraintRanges) {
+		if (tsa == null || iter == 0) {
+			return false;
+		}
+		syncs++;
+		lastMillis = watch.getTime();
+		lastIter = iter;
+		lastPerturbsKept = numPerturbsKept;
+		lastEnergy = energy.clone();
+		lastWritten = false;
+		if (syncs % syncIntervals == 0) {
+			writeCheckpoint();
+		}
+		return false;
+	}
+
+	/**
+	 * Writes a checkpoint of the last sync if it has not been written yet. Call
+	 * this after the annealer has finished.
+	 */
+	public void finish() {
+		if (tsa != null && lastEnergy != null && !lastWritten) {
+			writeCheckpoint();
+		}
+	}
+
+	private void writeCheckpoint() {
+		Map<String, Double> energies = new HashMap<>();
+		Map<ConstraintRange, Double> rangeEnergies = tsa.getEnergies();
+		if (rangeEnergies != null) {
+			for (ConstraintRange range : rangeEnergies.keySet()) {
+				energies.put(range.name, rangeEnergies.get(range));
+			}
+		}
+		NZSHM22_InversionCheckpoint checkpoint = new NZSHM22_InversionCheckpoint(elapsedOffsetMillis + lastMillis,
+				lastIter, lastPerturbsKept, lastEnergy, tsa.getBestSolution().clone(), energies);
+		try {
+			checkpoint.write(checkpointFile);
+			lastWritten = true;
+			System.out.println("Wrote checkpoint after " + lastIter + " iterations to " + checkpointFile);
+		} catch (IOException e) {
+			// a failed checkpoint should not end a long running inversion
+			System.out.println("WARNING: could not write checkpoint " + checkpointFile + ": " + e.getMessage());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CheckpointCompletionCriteria(every " + syncIntervals + " syncs to " + checkpointFile + ")";
+	}
+}
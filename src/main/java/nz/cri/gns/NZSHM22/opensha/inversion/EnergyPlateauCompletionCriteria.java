@@ -0,0 +1,178 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import com.google.common.base.Preconditions;
+
+import scratch.UCERF3.simulatedAnnealing.ConstraintRange;
+import scratch.UCERF3.simulatedAnnealing.completion.CompletionCriteria;
+
+/**
+ * Completes when the energy has reached a plateau. The energy at each of the
+ * last W sync intervals is fitted with a Theil-Sen slope, which ignores the
+ * occasional jump between syncs, and the improvement per hour relative to the
+ * median energy in the window is compared to a threshold.
+ *
+ * The total energy and the energy of every constraint range must all have
+ * plateaued, so that a constraint that is still improving keeps the inversion
+ * running even if the total energy is dominated by another one.
+ */
+public class EnergyPlateauCompletionCriteria implements CompletionCriteria {
+
+	private static final double MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+	private final int windowSyncs;
+	private final double minImprovementPerHour;
+
+	private final ArrayDeque<Sample> window;
+	private boolean satisfied = false;
+	private double totalImprovementPerHour = Double.NaN;
+
+	/**
+	 * @param windowSyncs           the number of sync intervals to fit the slope
+	 *                              over, at least 3
+	 * @param minImprovementPerHour the relative improvement per hour below which
+	 *                              the energy has plateaued, e.g. 0.01 for 1% per
+	 *                              hour
+	 */
+	public EnergyPlateauCompletionCriteria(int windowSyncs, double minImprovementPerHour) {
+		Preconditions.checkArgument(windowSyncs >= 3, "windowSyncs must be at least 3");
+		Preconditions.checkArgument(minImprovementPerHour >= 0, "minImprovementPerHour must not be negative");
+		this.windowSyncs = windowSyncs;
+		this.minImprovementPerHour = minImprovementPerHour;
+		this.window = new ArrayDeque<>(windowSyncs);
+	}
+
+	@Override
+	public boolean isSatisfied(StopWatch watch, long iter, double[] energy, long numPerturbsKept, int numNonZero,
+			double[] misfits, double[] misfits_ineq, List<ConstraintRange> constraintRanges) {
+		if (iter == 0) {
+			// the initial check before any annealing
+			return false;
+		}
+		return isSatisfied(watch.getTime(), energy[0],
+				TelemetryCompletionCriteria.calcRangeEnergies(misfits, misfits_ineq, constraintRanges));
+	}
+
+	boolean isSatisfied(long millis, double totalEnergy, Map<String, Double> rangeEnergies) {
+		if (window.size() == windowSyncs) {
+			window.removeFirst();
+		}
+		window.addLast(new Sample(millis, totalEnergy, rangeEnergies));
+		if (window.size() < windowSyncs) {
+			return false;
+		}
+
+		List<Sample> samples = new ArrayList<>(window);
+		double[] hours = new double[samples.size()];
+		double[] energies = new double[samples.size()];
+		for (int i = 0; i < samples.size(); i++) {
+			hours[i] = samples.get(i).millis / MILLIS_PER_HOUR;
+			energies[i] = samples.get(i).totalEnergy;
+		}
+		totalImprovementPerHour = relativeImprovementPerHour(hours, energies);
+		if (totalImprovementPerHour >= minImprovementPerHour) {
+			return false;
+		}
+
+		for (String range : rangeEnergies.keySet()) {
+			for (int i = 0; i < samples.size(); i++) {
+				Double rangeEnergy = samples.get(i).rangeEnergies.get(range);
+				energies[i] = rangeEnergy == null ? Double.NaN : rangeEnergy;
+			}
+			if (relativeImprovementPerHour(hours, energies) >= minImprovementPerHour) {
+				return false;
+			}
+		}
+
+		satisfied = true;
+		return true;
+	}
+
+	/**
+	 * @return the decrease in energy per hour as a fraction of the median energy,
+	 *         or 0 if the energy is 0 or not known for the whole window.
+	 */
+	static double relativeImprovementPerHour(double[] hours, double[] energies) {
+		for (double energy : energies) {
+			if (Double.isNaN(energy)) {
+				return 0;
+			}
+		}
+		double medianEnergy = median(energies);
+		if (medianEnergy == 0) {
+			return 0;
+		}
+		return -theilSenSlope(hours, energies) / Math.abs(medianEnergy);
+	}
+
+	/**
+	 * @return the median of the slopes between all pairs of points with distinct
+	 *         x values
+	 */
+	static double theilSenSlope(double[] x, double[] y) {
+		Preconditions.checkArgument(x.length == y.length);
+		double[] slopes = new double[x.length * (x.length - 1) / 2];
+		int numSlopes = 0;
+		for (int i = 0; i < x.length; i++) {
+			for (int j = i + 1; j < x.length; j++) {
+				if (x[j] != x[i]) {
+					slopes[numSlopes++] = (y[j] - y[i]) / (x[j] - x[i]);
+				}
+			}
+		}
+		if (numSlopes == 0) {
+			return 0;
+		}
+		return median(Arrays.copyOf(slopes, numSlopes));
+	}
+
+	private static double median(double[] values) {
+		double[] sorted = Arrays.copyOf(values, values.length);
+		Arrays.sort(sorted);
+		int mid = sorted.length / 2;
+		if (sorted.length % 2 == 1) {
+			return sorted[mid];
+		}
+		return (sorted[mid - 1] + sorted[mid]) / 2;
+	}
+
+	/**
+	 * @return true if this criteria has ended the inversion
+	 */
+	public boolean isPlateauReached() {
+		return satisfied;
+	}
+
+	/**
+	 * @return the relative improvement per hour of the total energy at the last
+	 *         sync, or NaN if the window was not full yet
+	 */
+	public double getTotalImprovementPerHour() {
+		return totalImprovementPerHour;
+	}
+
+	@Override
+	public String toString() {
+		return "EnergyPlateauCompletionCriteria(windowSyncs: " + windowSyncs + ", minImprovementPerHour: "
+				+ minImprovementPerHour + ")";
+	}
+
+	private static class Sample {
+		final long millis;
+		final double totalEnergy;
+		final Map<String, Double> rangeEnergies;
+
+		Sample(long millis, double totalEnergy, Map<String, Double> rangeEnergies) {
+			this.millis = millis;
+			this.totalEnergy = totalEnergy;
+			this.rangeEnergies = rangeEnergies;
+		}
+	}
+}
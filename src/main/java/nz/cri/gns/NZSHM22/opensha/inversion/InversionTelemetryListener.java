@@ -0,0 +1,17 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+/**
+ * Receives a telemetry record at every sync interval of a running inversion.
+ * Listeners are called on the annealing control thread, so they should return
+ * quickly.
+ */
+public interface InversionTelemetryListener {
+
+	void onSync(InversionTelemetryRecord record);
+
+	/**
+	 * Called once when the inversion has finished.
+	 */
+	default void onFinish() {
+	}
+}
@@ -0,0 +1,83 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.util.Map;
+
+/**
+ * The state of a running inversion at one sync interval.
+ */
+public class InversionTelemetryRecord {
+
+	private final long timestamp;
+	private final long elapsedMillis;
+	private final long iterations;
+	private final double perturbationsPerSecond;
+	private final long acceptedMoves;
+	private final long rejectedMoves;
+	private final int nonZeroRates;
+	private final double totalEnergy;
+	private final Map<String, Double> energies;
+
+	/**
+	 * @param timestamp              wall clock time in milliseconds since the epoch
+	 * @param elapsedMillis          annealing time so far
+	 * @param iterations             the number of attempted perturbations so far
+	 * @param perturbationsPerSecond attempted perturbations per second since the
+	 *                               previous record
+	 * @param acceptedMoves          the number of perturbations kept so far
+	 * @param rejectedMoves          the number of perturbations rejected so far
+	 * @param nonZeroRates           the number of ruptures with a non-zero rate in
+	 *                               the best solution
+	 * @param totalEnergy            the total energy of the best solution
+	 * @param energies               the energy of each constraint range of the
+	 *                               best solution, by name
+	 */
+	public InversionTelemetryRecord(long timestamp, long elapsedMillis, long iterations,
+			double perturbationsPerSecond, long acceptedMoves, long rejectedMoves, int nonZeroRates,
+			double totalEnergy, Map<String, Double> energies) {
+		this.timestamp = timestamp;
+		this.elapsedMillis = elapsedMillis;
+		this.iterations = iterations;
+		this.perturbationsPerSecond = perturbationsPerSecond;
+		this.acceptedMoves = acceptedMoves;
+		this.rejectedMoves = rejectedMoves;
+		this.nonZeroRates = nonZeroRates;
+		this.totalEnergy = totalEnergy;
+		this.energies = energies;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public long getIterations() {
+		return iterations;
+	}
+
+	public double getPerturbationsPerSecond() {
+		return perturbationsPerSecond;
+	}
+
+	public long getAcceptedMoves() {
+		return acceptedMoves;
+	}
+
+	public long getRejectedMoves() {
+		return rejectedMoves;
+	}
+
+	public int getNonZeroRates() {
+		return nonZeroRates;
+	}
+
+	public double getTotalEnergy() {
+		return totalEnergy;
+	}
+
+	public Map<String, Double> getEnergies() {
+		return energies;
+	}
+}
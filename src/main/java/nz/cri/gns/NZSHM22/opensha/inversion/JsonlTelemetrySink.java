@@ -0,0 +1,58 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+
+/**
+ * Writes telemetry records to a file as JSON, one record per line. Each line is
+ * flushed as it is written so that the file can be followed while the
+ * inversion runs.
+ */
+public class JsonlTelemetrySink implements InversionTelemetryListener {
+
+	private final File file;
+	private final Gson gson = new Gson();
+	private Writer writer;
+
+	/**
+	 * @param file the file to append records to
+	 */
+	public JsonlTelemetrySink(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public synchronized void onSync(InversionTelemetryRecord record) {
+		try {
+			if (writer == null) {
+				writer = new BufferedWriter(
+						new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+			}
+			writer.write(gson.toJson(record));
+			writer.write('\n');
+			writer.flush();
+		} catch (IOException e) {
+			// telemetry should not end a running inversion
+			System.out.println("WARNING: could not write telemetry to " + file + ": " + e.getMessage());
+		}
+	}
+
+	@Override
+	public synchronized void onFinish() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				System.out.println("WARNING: could not close telemetry file " + file + ": " + e.getMessage());
+			}
+			writer = null;
+		}
+	}
+}
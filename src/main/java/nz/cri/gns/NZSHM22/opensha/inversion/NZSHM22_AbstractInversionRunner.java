@@ -7,6 +7,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.math3.util.Precision;
 import org.dom4j.DocumentException;
@@ -49,6 +54,11 @@ public abstract class NZSHM22_AbstractInversionRunner {
 	protected List<InversionConstraint> constraints = new ArrayList<>();
 	protected List<CompletionCriteria> completionCriterias = new ArrayList<>();
 	private EnergyChangeCompletionCriteria energyChangeCompletionCriteria = null;
+	private double[] energyChangeCompletionParams = null;
+	private int energyPlateauWindowSyncs = 0;
+	private double energyPlateauMinImprovementPerHour = 0;
+	private EnergyPlateauCompletionCriteria energyPlateauCriteria = null;
+	private String stopReason = null;
 
 	private CompletionCriteria completionCriteria;
 	private ThreadedSimulatedAnnealing tsa;
@@ -57,6 +67,17 @@ public abstract class NZSHM22_AbstractInversionRunner {
 
 	private Map<String, Double> finalEnergies = new HashMap<String, Double>();
 	private InversionInputGenerator inversionInputGenerator;
+	private NZSHM22_InversionInputCache inversionInputCache = null;
+	private NZSHM22_InversionInputs generatedInputs = null;
+	private Map<String, Double> constraintRangeScales = new HashMap<>();
+
+	// the annealing thread iterates over the listeners while clients may add more
+	private List<InversionTelemetryListener> telemetryListeners = new CopyOnWriteArrayList<>();
+	private RingBufferTelemetrySink telemetryBuffer = null;
+
+	private File warmStartSolutionFile = null;
+	private File checkpointFile = null;
+	private int checkpointSyncIntervals = 0;
 
 	protected List<IncrementalMagFreqDist> solutionMfds;
 	/*
@@ -113,9 +134,62 @@ public abstract class NZSHM22_AbstractInversionRunner {
 			return this;
 		this.energyChangeCompletionCriteria = new EnergyChangeCompletionCriteria(energyDelta, energyPercentDelta,
 				lookBackMins);
+		this.energyChangeCompletionParams = new double[] { energyDelta, energyPercentDelta, lookBackMins };
+		return this;
+	}
+
+	/**
+	 * Stops the inversion when the total energy and the energy of each constraint
+	 * improve by less than minImprovementPerHour, relative to their current value,
+	 * fitted over the last windowSyncs sync intervals. The inversion time is still
+	 * the upper limit.
+	 * 
+	 * @param windowSyncs           the number of sync intervals to fit over, at
+	 *                              least 3. May be set to 0 to noop this method.
+	 * @param minImprovementPerHour e.g. 0.01 to stop when the energy improves by
+	 *                              less than 1% per hour
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setEnergyPlateauCompletionCriteria(int windowSyncs,
+			double minImprovementPerHour) {
+		if (windowSyncs == 0)
+			return this;
+		Preconditions.checkArgument(windowSyncs >= 3, "windowSyncs must be at least 3");
+		this.energyPlateauWindowSyncs = windowSyncs;
+		this.energyPlateauMinImprovementPerHour = minImprovementPerHour;
+		return this;
+	}
+
+	/**
+	 * Scales the rows of a constraint range, which is the same as multiplying the
+	 * weight of that constraint. The inputs are generated once per configure(), so
+	 * a weight sweep can call this and runInversion() repeatedly without generating
+	 * them again. Final energies are reported for the scaled constraints.
+	 * 
+	 * @param rangeName the ConstraintRange name, see getConstraintRangeNames()
+	 * @param scale     the scale relative to the configured weight, 1 to reset
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setConstraintRangeScale(String rangeName, double scale) {
+		Preconditions.checkArgument(scale >= 0, "scale must not be negative");
+		if (scale == 1)
+			constraintRangeScales.remove(rangeName);
+		else
+			constraintRangeScales.put(rangeName, scale);
 		return this;
 	}
 
+	/**
+	 * @return the names of the constraint ranges of the configured inversion
+	 * @throws IOException
+	 */
+	public List<String> getConstraintRangeNames() throws IOException {
+		List<String> names = new ArrayList<>();
+		for (ConstraintRange range : generateInputs().getConstraintRowRanges())
+			names.add(range.name);
+		return names;
+	}
+
 	/**
 	 * Sets the length of time between syncs in seconds. Default is 10 seconds.
 	 * 
@@ -139,15 +213,145 @@ public abstract class NZSHM22_AbstractInversionRunner {
 		return this;
 	}
 
+	/**
+	 * Starts the inversion from the rates of a previous solution instead of the
+	 * initial rupture model. Ruptures are matched by their section IDs, ruptures
+	 * that are not in the previous solution start from the initial rupture model.
+	 * 
+	 * @param solutionFile the previous solution
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setWarmStartSolution(File solutionFile) {
+		this.warmStartSolutionFile = solutionFile;
+		return this;
+	}
+
+	/**
+	 * Starts the inversion from the rates of a previous solution instead of the
+	 * initial rupture model. Ruptures are matched by their section IDs, ruptures
+	 * that are not in the previous solution start from the initial rupture model.
+	 * 
+	 * @param solutionFileName the previous solution
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setWarmStartSolution(String solutionFileName) {
+		return setWarmStartSolution(new File(solutionFileName));
+	}
+
+	/**
+	 * Writes a checkpoint of the annealing state every n sync intervals. A
+	 * checkpointed inversion can be continued with resumeInversion().
+	 * 
+	 * @param checkpointFile the checkpoint file, overwritten with each checkpoint
+	 * @param syncIntervals  the number of sync intervals between checkpoints
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setCheckpoint(File checkpointFile, int syncIntervals) {
+		Preconditions.checkArgument(syncIntervals > 0, "syncIntervals must be positive");
+		this.checkpointFile = checkpointFile;
+		this.checkpointSyncIntervals = syncIntervals;
+		return this;
+	}
+
+	/**
+	 * Writes a checkpoint of the annealing state every n sync intervals. A
+	 * checkpointed inversion can be continued with resumeInversion().
+	 * 
+	 * @param checkpointFileName the checkpoint file, overwritten with each
+	 *                           checkpoint
+	 * @param syncIntervals      the number of sync intervals between checkpoints
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setCheckpoint(String checkpointFileName, int syncIntervals) {
+		return setCheckpoint(new File(checkpointFileName), syncIntervals);
+	}
+
+	/**
+	 * Caches generated inversion inputs in a directory. Runs with the same rupture
+	 * set and constraint configuration load the inputs from the cache instead of
+	 * generating them.
+	 * 
+	 * @param cacheDir the cache directory, created if it does not exist
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setInversionInputCache(File cacheDir) {
+		this.inversionInputCache = new NZSHM22_InversionInputCache(cacheDir);
+		return this;
+	}
+
+	/**
+	 * Caches generated inversion inputs in a directory. Runs with the same rupture
+	 * set and constraint configuration load the inputs from the cache instead of
+	 * generating them.
+	 * 
+	 * @param cacheDirName the cache directory, created if it does not exist
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setInversionInputCache(String cacheDirName) {
+		return setInversionInputCache(new File(cacheDirName));
+	}
+
+	/**
+	 * Adds a listener that receives a telemetry record at every sync interval.
+	 * Listeners must be added before runInversion() is called.
+	 * 
+	 * @param listener the listener
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner addTelemetryListener(InversionTelemetryListener listener) {
+		this.telemetryListeners.add(listener);
+		return this;
+	}
+
+	/**
+	 * Appends a JSON telemetry record to a file at every sync interval.
+	 * 
+	 * @param telemetryFileName the file name
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setTelemetryFile(String telemetryFileName) {
+		return addTelemetryListener(new JsonlTelemetrySink(new File(telemetryFileName)));
+	}
+
+	/**
+	 * Keeps the most recent telemetry records in memory, so that they can be
+	 * polled with getTelemetryBuffer() while the inversion runs. Must be called
+	 * before runInversion().
+	 * 
+	 * @param capacity the number of records to keep
+	 * @return this runner.
+	 */
+	public NZSHM22_AbstractInversionRunner setTelemetryBufferCapacity(int capacity) {
+		Preconditions.checkState(telemetryBuffer == null, "The telemetry buffer has already been set");
+		telemetryBuffer = new RingBufferTelemetrySink(capacity);
+		return addTelemetryListener(telemetryBuffer);
+	}
+
+	/**
+	 * @return the telemetry buffer, or null if setTelemetryBufferCapacity() has
+	 *         not been called
+	 */
+	public RingBufferTelemetrySink getTelemetryBuffer() {
+		return telemetryBuffer;
+	}
+
 	/**
 	 * @param inputGen
 	 * @return
 	 */
 	public NZSHM22_AbstractInversionRunner setInversionInputGenerator(InversionInputGenerator inputGen) {
 		this.inversionInputGenerator = inputGen;
+		this.generatedInputs = null;
 		return this;
 	}
 
+	/**
+	 * @return the input generator set up by configure()
+	 */
+	public InversionInputGenerator getInversionInputGenerator() {
+		return inversionInputGenerator;
+	}
+
 	public NZSHM22_AbstractInversionRunner setRuptureSetFile(String ruptureSetFileName)
 			throws IOException, DocumentException {
 		File rupSetFile = new File(ruptureSetFileName);
@@ -166,9 +370,21 @@ public abstract class NZSHM22_AbstractInversionRunner {
 	public NZSHM22_AbstractInversionRunner setRuptureSetFile(File ruptureSetFile)
 			throws IOException, DocumentException {
 		FaultSystemRupSet rupSetA = FaultSystemIO.loadRupSet(ruptureSetFile);
+		return setRuptureSet(rupSetA);
+	}
+
+	/**
+	 * Sets a rupture set that has already been loaded. The runner wraps it in its
+	 * own NZSHM22_InversionFaultSystemRuptSet, so the same rupture set can be used
+	 * by several runners.
+	 *
+	 * @param ruptureSet the rupture set
+	 * @return this runner
+	 */
+	public NZSHM22_AbstractInversionRunner setRuptureSet(FaultSystemRupSet ruptureSet) {
 		LogicTreeBranch branch = (LogicTreeBranch) LogicTreeBranch.DEFAULT;
 
-		this.rupSet = new NZSHM22_InversionFaultSystemRuptSet(rupSetA, branch);
+		this.rupSet = new NZSHM22_InversionFaultSystemRuptSet(ruptureSet, branch);
 		return this;
 	}
 
@@ -235,18 +451,80 @@ public abstract class NZSHM22_AbstractInversionRunner {
 	 * @throws DocumentException
 	 */
 	public NZSHM22_InversionFaultSystemSolution runInversion() throws IOException, DocumentException {
+		return runInversion(null);
+	}
+
+	/**
+	 * Resumes an inversion from a checkpoint written by an earlier run of the same
+	 * rupture set and configuration. make sure to call .configure() first.
+	 * 
+	 * The inversion continues from the checkpointed best solution and perturbation
+	 * counts, and runs for what is left of the configured inversion time.
+	 * 
+	 * @param checkpoint a checkpoint file, see setCheckpoint()
+	 * @return the FaultSystemSolution.
+	 * @throws IOException
+	 * @throws DocumentException
+	 */
+	public NZSHM22_InversionFaultSystemSolution resumeInversion(File checkpoint) throws IOException, DocumentException {
+		return runInversion(NZSHM22_InversionCheckpoint.read(checkpoint));
+	}
+
+	/**
+	 * Resumes an inversion from a checkpoint written by an earlier run of the same
+	 * rupture set and configuration. make sure to call .configure() first.
+	 * 
+	 * @param checkpointFileName a checkpoint file, see setCheckpoint()
+	 * @return the FaultSystemSolution.
+	 * @throws IOException
+	 * @throws DocumentException
+	 */
+	public NZSHM22_InversionFaultSystemSolution resumeInversion(String checkpointFileName)
+			throws IOException, DocumentException {
+		return resumeInversion(new File(checkpointFileName));
+	}
+
+	private NZSHM22_InversionFaultSystemSolution runInversion(NZSHM22_InversionCheckpoint resumeFrom)
+			throws IOException, DocumentException {
 
 		// weight of entropy-maximization constraint (not used in UCERF3)
 		double smoothnessWt = 0;
 
-		inversionInputGenerator.generateInputs(true);
-		// column compress it for fast annealing
-		inversionInputGenerator.columnCompress();
+		NZSHM22_InversionInputs inputs = getScaledInputs();
+
+		long elapsedMillis = 0;
+		if (resumeFrom != null) {
+			elapsedMillis = resumeFrom.getElapsedMillis();
+			System.out.println("Resuming inversion after " + (elapsedMillis / 1000) + " seconds and "
+					+ resumeFrom.getIterations() + " iterations");
+		}
 
 		// inversion completion criteria (how long it will run)
-		this.completionCriterias.add(TimeCompletionCriteria.getInSeconds(inversionSecs));
-		if (!(this.energyChangeCompletionCriteria == null))
+		this.completionCriterias.clear();
+
+		// the compound criteria stops at the first satisfied criteria, so the criteria
+		// with side effects come first to also see the final sync
+		CheckpointCompletionCriteria checkpointCriteria = null;
+		if (checkpointFile != null) {
+			checkpointCriteria = new CheckpointCompletionCriteria(checkpointFile, checkpointSyncIntervals,
+					elapsedMillis);
+			this.completionCriterias.add(checkpointCriteria);
+		}
+
+		if (!telemetryListeners.isEmpty())
+			this.completionCriterias.add(new TelemetryCompletionCriteria(telemetryListeners));
+
+		long remainingSecs = Math.max(0, inversionSecs - elapsedMillis / 1000);
+		this.completionCriterias.add(TimeCompletionCriteria.getInSeconds(remainingSecs));
+		if (!(this.energyChangeCompletionCriteria == null)) {
+			// the criteria keeps the energy history, so each run needs a new one
+			this.energyChangeCompletionCriteria = new EnergyChangeCompletionCriteria(energyChangeCompletionParams[0],
+					energyChangeCompletionParams[1], energyChangeCompletionParams[2]);
 			this.completionCriterias.add(this.energyChangeCompletionCriteria);
+		}
+		energyPlateauCriteria = createEnergyPlateauCriteria();
+		if (energyPlateauCriteria != null)
+			this.completionCriterias.add(energyPlateauCriteria);
 
 		completionCriteria = new CompoundCompletionCriteria(this.completionCriterias);
 
@@ -260,24 +538,190 @@ public abstract class NZSHM22_AbstractInversionRunner {
 		// between synchronization
 		CompletionCriteria subCompletionCriteria = TimeCompletionCriteria.getInSeconds(syncInterval); // 1 second;
 
-		initialState = inversionInputGenerator.getInitialSolution();
+		initialState = inputs.getInitialSolution();
+		double[] startState = initialState;
+		if (resumeFrom != null) {
+			Preconditions.checkState(resumeFrom.getBestSolution().length == initialState.length,
+					"Checkpoint has %s ruptures, but the rupture set has %s", resumeFrom.getBestSolution().length,
+					initialState.length);
+			startState = resumeFrom.getBestSolution();
+		} else if (warmStartSolutionFile != null) {
+			startState = NZSHM22_WarmStart.fromSolution(warmStartSolutionFile, rupSet, initialState,
+					inputs.getWaterLevelRates());
+		}
 
-		tsa = new ThreadedSimulatedAnnealing(inversionInputGenerator.getA(), inversionInputGenerator.getD(),
-				initialState, smoothnessWt, inversionInputGenerator.getA_ineq(), inversionInputGenerator.getD_ineq(),
-				inversionInputGenerator.getWaterLevelRates(), numThreads, subCompletionCriteria);
-		tsa.setConstraintRanges(inversionInputGenerator.getConstraintRowRanges());
+		tsa = new ThreadedSimulatedAnnealing(inputs.getA(), inputs.getD(), startState, smoothnessWt,
+				inputs.getA_ineq(), inputs.getD_ineq(), inputs.getWaterLevelRates(), numThreads,
+				subCompletionCriteria);
+		tsa.setConstraintRanges(inputs.getConstraintRowRanges());
+		if (checkpointCriteria != null)
+			checkpointCriteria.setAnnealer(tsa);
 
 		// From CLI metadata Analysis
 		initialState = Arrays.copyOf(initialState, initialState.length);
 
-		tsa.iterate(completionCriteria);
+		long startMillis = System.currentTimeMillis();
+		if (resumeFrom == null)
+			tsa.iterate(completionCriteria);
+		else
+			tsa.iterate(resumeFrom.getIterations(), resumeFrom.getPerturbations(), completionCriteria);
+		stopReason = getStopReason(elapsedMillis + System.currentTimeMillis() - startMillis);
+		System.out.println("Inversion stopped by " + stopReason);
+
+		if (checkpointCriteria != null)
+			checkpointCriteria.finish();
+
+		for (InversionTelemetryListener listener : telemetryListeners)
+			listener.onFinish();
 
 		// now assemble the solution
 		double[] solution_raw = tsa.getBestSolution();
 
 		// adjust for minimum rates if applicable
-		double[] solution_adjusted = inversionInputGenerator.adjustSolutionForWaterLevel(solution_raw);
+		double[] solution_adjusted = inputs.adjustSolutionForWaterLevel(solution_raw);
+
+		finalEnergies = getFinalEnergies(tsa);
+
+		// TODO, do we really do want to store the config and energies now?
+		solution = new NZSHM22_InversionFaultSystemSolution(rupSet, solution_adjusted, finalEnergies); // , null,
+																										// energies);
+		return solution;
+	}
+
+	/**
+	 * Runs an ensemble of independent annealing chains. The inversion inputs are
+	 * generated once and shared read-only by all chains, which run concurrently
+	 * and split the configured number of threads between them. make sure to call
+	 * .configure() first.
+	 * 
+	 * Each chain runs for the configured inversion time, and stops early if the
+	 * energy change completion criteria is set and met. All chains start from the
+	 * warm start solution if one is set.
+	 * 
+	 * @param numChains the number of chains
+	 * @return the ensemble of solutions
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws DocumentException if the warm start solution cannot be read
+	 */
+	public NZSHM22_InversionEnsemble runEnsemble(int numChains)
+			throws IOException, InterruptedException, ExecutionException, DocumentException {
+		Preconditions.checkArgument(numChains > 0, "numChains must be positive");
+
+		NZSHM22_InversionInputs inputs = getScaledInputs();
+
+		double[] startState = inputs.getInitialSolution();
+		if (warmStartSolutionFile != null)
+			startState = NZSHM22_WarmStart.fromSolution(warmStartSolutionFile, rupSet, startState,
+					inputs.getWaterLevelRates());
+		double[] chainStartState = startState;
+
+		int threadsPerChain = Math.max(1, numThreads / numChains);
+		System.out.println("Running " + numChains + " annealing chains with " + threadsPerChain + " threads each");
+
+		ExecutorService executor = Executors.newFixedThreadPool(numChains);
+		List<Future<ThreadedSimulatedAnnealing>> chains = new ArrayList<>();
+		try {
+			for (int c = 0; c < numChains; c++) {
+				chains.add(executor.submit(() -> runChain(inputs, chainStartState, threadsPerChain)));
+			}
+
+			List<NZSHM22_InversionFaultSystemSolution> solutions = new ArrayList<>();
+			List<Map<String, Double>> energies = new ArrayList<>();
+			for (Future<ThreadedSimulatedAnnealing> chain : chains) {
+				ThreadedSimulatedAnnealing chainTsa = chain.get();
+				double[] rates = inputs.adjustSolutionForWaterLevel(chainTsa.getBestSolution());
+				Map<String, Double> chainEnergies = getFinalEnergies(chainTsa);
+				energies.add(chainEnergies);
+				solutions.add(new NZSHM22_InversionFaultSystemSolution(rupSet, rates, chainEnergies));
+			}
+			return new NZSHM22_InversionEnsemble(solutions, energies);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs a single annealing chain of an ensemble on the shared inversion inputs.
+	 * Completion criteria are stateful, so each chain gets its own, and each chain
+	 * anneals its own copy of the start state.
+	 */
+	private ThreadedSimulatedAnnealing runChain(NZSHM22_InversionInputs inputs, double[] startState,
+			int chainThreads) {
+		List<CompletionCriteria> criteria = new ArrayList<>();
+		criteria.add(TimeCompletionCriteria.getInSeconds(inversionSecs));
+		if (energyChangeCompletionParams != null)
+			criteria.add(new EnergyChangeCompletionCriteria(energyChangeCompletionParams[0],
+					energyChangeCompletionParams[1], energyChangeCompletionParams[2]));
+		EnergyPlateauCompletionCriteria plateauCriteria = createEnergyPlateauCriteria();
+		if (plateauCriteria != null)
+			criteria.add(plateauCriteria);
+
+		double[] chainInitialState = Arrays.copyOf(startState, startState.length);
+
+		ThreadedSimulatedAnnealing chainTsa = new ThreadedSimulatedAnnealing(inputs.getA(), inputs.getD(),
+				chainInitialState, 0, inputs.getA_ineq(), inputs.getD_ineq(), inputs.getWaterLevelRates(),
+				chainThreads, TimeCompletionCriteria.getInSeconds(syncInterval));
+		chainTsa.setConstraintRanges(inputs.getConstraintRowRanges());
+		chainTsa.iterate(new CompoundCompletionCriteria(criteria));
+		return chainTsa;
+	}
 
+	private EnergyPlateauCompletionCriteria createEnergyPlateauCriteria() {
+		if (energyPlateauWindowSyncs == 0)
+			return null;
+		return new EnergyPlateauCompletionCriteria(energyPlateauWindowSyncs, energyPlateauMinImprovementPerHour);
+	}
+
+	/**
+	 * Works out which completion criteria ended the inversion. Only the plateau
+	 * criteria records whether it was satisfied, so the time limit is checked
+	 * next, and anything else must have been the energy change criteria.
+	 */
+	private String getStopReason(long elapsedMillis) {
+		if (energyPlateauCriteria != null && energyPlateauCriteria.isPlateauReached())
+			return "energy_plateau";
+		if (elapsedMillis >= inversionSecs * 1000)
+			return "time";
+		if (energyChangeCompletionCriteria != null)
+			return "energy_change";
+		return "unknown";
+	}
+
+	/**
+	 * @return the generated inputs with the constraint range scales applied
+	 */
+	private NZSHM22_InversionInputs getScaledInputs() throws IOException {
+		NZSHM22_InversionInputs inputs = generateInputs();
+		if (constraintRangeScales.isEmpty())
+			return inputs;
+		System.out.println("Scaling constraint ranges " + constraintRangeScales);
+		return inputs.scaleRanges(constraintRangeScales);
+	}
+
+	/**
+	 * Generates the inversion inputs, or loads them from the cache if one is set.
+	 * The inputs are kept until the input generator changes.
+	 */
+	protected NZSHM22_InversionInputs generateInputs() throws IOException {
+		if (generatedInputs != null)
+			return generatedInputs;
+
+		AbstractInversionConfiguration config = null;
+		if (inversionInputGenerator instanceof NZSHM22_CrustalInversionInputGenerator)
+			config = ((NZSHM22_CrustalInversionInputGenerator) inversionInputGenerator).getConfig();
+		else if (inversionInputGenerator instanceof NZSHM22_SubductionInversionInputGenerator)
+			config = ((NZSHM22_SubductionInversionInputGenerator) inversionInputGenerator).getConfig();
+
+		if (inversionInputCache != null && config != null)
+			generatedInputs = inversionInputCache.getInputs(rupSet, config, inversionInputGenerator);
+		else
+			generatedInputs = NZSHM22_InversionInputs.generate(inversionInputGenerator);
+		return generatedInputs;
+	}
+
+	private static Map<String, Double> getFinalEnergies(ThreadedSimulatedAnnealing tsa) {
+		Map<String, Double> finalEnergies = new HashMap<String, Double>();
 		Map<ConstraintRange, Double> energies = tsa.getEnergies();
 		if (energies != null) {
 			System.out.println("Final energies:");
@@ -286,11 +730,7 @@ public abstract class NZSHM22_AbstractInversionRunner {
 				System.out.println("\t" + range.name + ": " + energies.get(range).floatValue());
 			}
 		}
-
-		// TODO, do we really do want to store the config and energies now?
-		solution = new NZSHM22_InversionFaultSystemSolution(rupSet, solution_adjusted, finalEnergies); // , null,
-																										// energies);
-		return solution;
+		return finalEnergies;
 	}
 
 	@SuppressWarnings("deprecation")
@@ -304,6 +744,10 @@ public abstract class NZSHM22_AbstractInversionRunner {
 
 		metrics.put("total_perturbations", Long.toString(numPerturbs));
 		metrics.put("total_ruptures", Integer.toString(numRups));
+		metrics.put("stop_reason", stopReason);
+		if (energyPlateauCriteria != null && !Double.isNaN(energyPlateauCriteria.getTotalImprovementPerHour()))
+			metrics.put("energy_improvement_per_hour",
+					Double.toString(energyPlateauCriteria.getTotalImprovementPerHour()));
 
 		int rupsPerturbed = 0;
 		double[] solution_no_min_rates = tsa.getBestSolution();
@@ -0,0 +1,337 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.dom4j.DocumentException;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import scratch.UCERF3.FaultSystemRupSet;
+import scratch.UCERF3.inversion.UCERF3InversionConfiguration.SlipRateConstraintWeightingType;
+import scratch.UCERF3.utils.FaultSystemIO;
+
+/**
+ * Runs a list of inversion jobs in one JVM. Each rupture set is loaded once and
+ * shared by all jobs that use it, and jobs run concurrently with a fixed number
+ * of annealing threads each. The solution and metrics of each job are written
+ * to the output directory as soon as the job finishes.
+ *
+ * Each job wraps the shared rupture set in its own
+ * NZSHM22_InversionFaultSystemRuptSet, because configure() sets the job's
+ * target MFDs on it.
+ */
+public class NZSHM22_BatchInversionRunner {
+
+	private final List<Job> jobs = new ArrayList<>();
+	private int totalThreads = Runtime.getRuntime().availableProcessors();
+	private int threadsPerJob = 4;
+	private File outputDir = new File(".");
+
+	/**
+	 * An inversion configuration. The slip rate constraint is only set up if a
+	 * weighting type is given. The Gutenberg-Richter MFD is only used by
+	 * subduction jobs, and the UNCERTAINTY_ADJUSTED slip rate constraint only by
+	 * crustal jobs. Jobs that set them for the other type are rejected.
+	 */
+	public static class Job {
+		String name;
+		/** crustal or subduction */
+		String type;
+		String ruptureSet;
+		long inversionSeconds = 60;
+		long syncInterval = 10;
+		double mfdEqualityConstraintWt = 10;
+		double mfdInequalityConstraintWt = 1000;
+		String slipRateWeightingType;
+		double slipRateConstraintWt_normalized;
+		double slipRateConstraintWt_unnormalized;
+		int slipRateUncertaintyWeight;
+		int slipRateUncertaintyScalingFactor;
+		// subduction only, null for the defaults
+		Double totalRateM5;
+		Double bValue;
+		Double mfdTransitionMag;
+
+		public Job() {
+		}
+
+		public Job(String name, String type, String ruptureSet) {
+			this.name = name;
+			this.type = type;
+			this.ruptureSet = ruptureSet;
+		}
+
+		public Job setInversionSeconds(long inversionSeconds) {
+			this.inversionSeconds = inversionSeconds;
+			return this;
+		}
+
+		public Job setSyncInterval(long syncInterval) {
+			this.syncInterval = syncInterval;
+			return this;
+		}
+
+		public Job setGutenbergRichterMFDWeights(double mfdEqualityConstraintWt, double mfdInequalityConstraintWt) {
+			this.mfdEqualityConstraintWt = mfdEqualityConstraintWt;
+			this.mfdInequalityConstraintWt = mfdInequalityConstraintWt;
+			return this;
+		}
+
+		public Job setSlipRateConstraint(String weightingType, double normalizedWt, double unnormalizedWt) {
+			this.slipRateWeightingType = weightingType;
+			this.slipRateConstraintWt_normalized = normalizedWt;
+			this.slipRateConstraintWt_unnormalized = unnormalizedWt;
+			return this;
+		}
+
+		public Job setSlipRateUncertaintyConstraint(String weightingType, int uncertaintyWeight, int scalingFactor) {
+			this.slipRateWeightingType = weightingType;
+			this.slipRateUncertaintyWeight = uncertaintyWeight;
+			this.slipRateUncertaintyScalingFactor = scalingFactor;
+			return this;
+		}
+
+		public Job setGutenbergRichterMFD(double totalRateM5, double bValue, double mfdTransitionMag) {
+			this.totalRateM5 = totalRateM5;
+			this.bValue = bValue;
+			this.mfdTransitionMag = mfdTransitionMag;
+			return this;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		void validate() {
+			Preconditions.checkArgument(name != null && type != null && ruptureSet != null,
+					"A job needs a name, type and ruptureSet");
+			Preconditions.checkArgument(type.equals("crustal") || type.equals("subduction"), "Unknown job type %s",
+					type);
+			if (type.equals("crustal"))
+				Preconditions.checkArgument(totalRateM5 == null && bValue == null && mfdTransitionMag == null,
+						"Job %s: the Gutenberg-Richter MFD is only supported by subduction jobs", name);
+			else
+				Preconditions.checkArgument(
+						!SlipRateConstraintWeightingType.UNCERTAINTY_ADJUSTED.name().equals(slipRateWeightingType),
+						"Job %s: the slip rate uncertainty constraint is only supported by crustal jobs", name);
+		}
+	}
+
+	/**
+	 * Adds a job.
+	 *
+	 * @param job the job
+	 * @return this runner
+	 */
+	public NZSHM22_BatchInversionRunner addJob(Job job) {
+		job.validate();
+		for (Job other : jobs)
+			Preconditions.checkArgument(!other.name.equals(job.name), "Duplicate job name %s", job.name);
+		jobs.add(job);
+		return this;
+	}
+
+	/**
+	 * Creates a job and adds it.
+	 *
+	 * @param name       the job name, used for the output file names
+	 * @param type       crustal or subduction
+	 * @param ruptureSet the rupture set file name
+	 * @return the job, to be configured further
+	 */
+	public Job addJob(String name, String type, String ruptureSet) {
+		Job job = new Job(name, type, ruptureSet);
+		addJob(job);
+		return job;
+	}
+
+	/**
+	 * Adds the jobs in a JSON file, which holds a list of objects with the fields
+	 * of Job.
+	 *
+	 * @param jobFile the JSON file
+	 * @return this runner
+	 * @throws IOException
+	 */
+	public NZSHM22_BatchInversionRunner addJobs(File jobFile) throws IOException {
+		try (Reader reader = Files.newBufferedReader(jobFile.toPath(), StandardCharsets.UTF_8)) {
+			for (Job job : new Gson().fromJson(reader, Job[].class)) {
+				addJob(job);
+			}
+		}
+		return this;
+	}
+
+	public NZSHM22_BatchInversionRunner addJobs(String jobFileName) throws IOException {
+		return addJobs(new File(jobFileName));
+	}
+
+	/**
+	 * Sets the number of threads shared by all jobs. Default is the number of
+	 * processors.
+	 */
+	public NZSHM22_BatchInversionRunner setTotalThreads(int totalThreads) {
+		Preconditions.checkArgument(totalThreads > 0, "totalThreads must be positive");
+		this.totalThreads = totalThreads;
+		return this;
+	}
+
+	/**
+	 * Sets the number of annealing threads of each job. totalThreads /
+	 * threadsPerJob jobs run at the same time. Default is 4.
+	 */
+	public NZSHM22_BatchInversionRunner setThreadsPerJob(int threadsPerJob) {
+		Preconditions.checkArgument(threadsPerJob > 0, "threadsPerJob must be positive");
+		this.threadsPerJob = threadsPerJob;
+		return this;
+	}
+
+	public NZSHM22_BatchInversionRunner setOutputDir(File outputDir) {
+		this.outputDir = outputDir;
+		return this;
+	}
+
+	public NZSHM22_BatchInversionRunner setOutputDir(String outputDirName) {
+		return setOutputDir(new File(outputDirName));
+	}
+
+	/**
+	 * Runs all jobs. A job that fails is reported and does not stop the others.
+	 *
+	 * @return the status of each job by name: "done" or the error message
+	 * @throws IOException          if a rupture set cannot be loaded
+	 * @throws DocumentException
+	 * @throws InterruptedException
+	 */
+	public Map<String, String> run() throws IOException, DocumentException, InterruptedException {
+		Preconditions.checkState(outputDir.exists() || outputDir.mkdirs(), "Could not create %s", outputDir);
+		// jobs can be changed after they were added
+		for (Job job : jobs)
+			job.validate();
+
+		// load each rupture set once, before any job starts
+		Map<String, FaultSystemRupSet> ruptureSets = new HashMap<>();
+		for (Job job : jobs) {
+			if (!ruptureSets.containsKey(job.ruptureSet)) {
+				System.out.println("Loading rupture set " + job.ruptureSet);
+				ruptureSets.put(job.ruptureSet, FaultSystemIO.loadRupSet(new File(job.ruptureSet)));
+			}
+		}
+
+		int concurrentJobs = Math.max(1, totalThreads / threadsPerJob);
+		System.out.println("Running " + jobs.size() + " inversion jobs, " + concurrentJobs + " at a time with "
+				+ threadsPerJob + " threads each");
+
+		Map<String, String> status = new LinkedHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(concurrentJobs);
+		try {
+			ExecutorCompletionService<String> completion = new ExecutorCompletionService<>(executor);
+			for (Job job : jobs) {
+				status.put(job.name, "not run");
+				FaultSystemRupSet ruptureSet = ruptureSets.get(job.ruptureSet);
+				completion.submit(() -> {
+					runJob(job, ruptureSet);
+					return job.name;
+				});
+			}
+			for (int j = 0; j < jobs.size(); j++) {
+				try {
+					String name = completion.take().get();
+					status.put(name, "done");
+					System.out.println("Finished inversion job " + name + " (" + (j + 1) + " of " + jobs.size() + ")");
+				} catch (ExecutionException e) {
+					if (!(e.getCause() instanceof JobFailure))
+						throw new IllegalStateException(e.getCause());
+					JobFailure failure = (JobFailure) e.getCause();
+					System.out.println("WARNING: inversion job " + failure.jobName + " failed: " + failure.getCause());
+					failure.getCause().printStackTrace();
+					status.put(failure.jobName, String.valueOf(failure.getCause()));
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return status;
+	}
+
+	private void runJob(Job job, FaultSystemRupSet ruptureSet) throws JobFailure {
+		try {
+			NZSHM22_AbstractInversionRunner runner = createRunner(job, ruptureSet);
+			NZSHM22_InversionFaultSystemSolution solution = runner.runInversion();
+			FaultSystemIO.writeSol(solution, new File(outputDir, job.name + ".zip"));
+			try (Writer writer = Files.newBufferedWriter(new File(outputDir, job.name + "_metrics.json").toPath(),
+					StandardCharsets.UTF_8)) {
+				new GsonBuilder().setPrettyPrinting().create().toJson(runner.getSolutionMetrics(), writer);
+			}
+		} catch (Exception e) {
+			throw new JobFailure(job.name, e);
+		}
+	}
+
+	/**
+	 * Creates and configures a runner for the job.
+	 */
+	protected NZSHM22_AbstractInversionRunner createRunner(Job job, FaultSystemRupSet ruptureSet) {
+		SlipRateConstraintWeightingType weightingType = job.slipRateWeightingType == null ? null
+				: SlipRateConstraintWeightingType.valueOf(job.slipRateWeightingType);
+
+		NZSHM22_AbstractInversionRunner runner;
+		if (job.type.equals("crustal")) {
+			NZSHM22_CrustalInversionRunner crustal = new NZSHM22_CrustalInversionRunner();
+			if (weightingType == SlipRateConstraintWeightingType.UNCERTAINTY_ADJUSTED)
+				crustal.setSlipRateUncertaintyConstraint(weightingType, job.slipRateUncertaintyWeight,
+						job.slipRateUncertaintyScalingFactor);
+			runner = crustal;
+		} else {
+			runner = new NZSHM22_SubductionInversionRunner().setGutenbergRichterMFD(
+					job.totalRateM5 == null ? 2.4 : job.totalRateM5, job.bValue == null ? 1.3 : job.bValue,
+					job.mfdTransitionMag == null ? 7.75 : job.mfdTransitionMag);
+		}
+		if (weightingType != null && weightingType != SlipRateConstraintWeightingType.UNCERTAINTY_ADJUSTED)
+			runner.setSlipRateConstraint(weightingType, job.slipRateConstraintWt_normalized,
+					job.slipRateConstraintWt_unnormalized);
+
+		return runner.setRuptureSet(ruptureSet)
+				.setNumThreads(threadsPerJob)
+				.setInversionSeconds(job.inversionSeconds)
+				.setSyncInterval(job.syncInterval)
+				.setGutenbergRichterMFDWeights(job.mfdEqualityConstraintWt, job.mfdInequalityConstraintWt)
+				.configure();
+	}
+
+	private static class JobFailure extends Exception {
+		private static final long serialVersionUID = 1L;
+		final String jobName;
+
+		JobFailure(String jobName, Throwable cause) {
+			super(cause.getMessage(), cause);
+			this.jobName = jobName;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, DocumentException, InterruptedException {
+		Preconditions.checkArgument(args.length >= 2, "Usage: <job file> <output dir> [threads per job]");
+		NZSHM22_BatchInversionRunner batch = new NZSHM22_BatchInversionRunner()
+				.addJobs(args[0])
+				.setOutputDir(args[1]);
+		if (args.length > 2)
+			batch.setThreadsPerJob(Integer.parseInt(args[2]));
+		System.out.println(batch.run());
+	}
+}
@@ -0,0 +1,154 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A snapshot of a running simulated annealing inversion that can be used to
+ * resume it later.
+ *
+ * ThreadedSimulatedAnnealing starts every thread from the best solution at each
+ * sync, so the best solution at a sync boundary is also the state of every
+ * thread.
+ */
+public class NZSHM22_InversionCheckpoint {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private final long elapsedMillis;
+	private final long iterations;
+	private final long perturbations;
+	private final double[] energy;
+	private final double[] bestSolution;
+	private final Map<String, Double> energies;
+
+	public NZSHM22_InversionCheckpoint(long elapsedMillis, long iterations, long perturbations, double[] energy,
+			double[] bestSolution, Map<String, Double> energies) {
+		this.elapsedMillis = elapsedMillis;
+		this.iterations = iterations;
+		this.perturbations = perturbations;
+		this.energy = energy;
+		this.bestSolution = bestSolution;
+		this.energies = energies;
+	}
+
+	/**
+	 * @return the annealing time in milliseconds spent before this checkpoint,
+	 *         including time from earlier resumed runs.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public long getIterations() {
+		return iterations;
+	}
+
+	public long getPerturbations() {
+		return perturbations;
+	}
+
+	/**
+	 * @return the best energy as reported by the annealer (total, equality,
+	 *         entropy, inequality)
+	 */
+	public double[] getEnergy() {
+		return energy;
+	}
+
+	/**
+	 * @return the best solution without water level adjustment
+	 */
+	public double[] getBestSolution() {
+		return bestSolution;
+	}
+
+	/**
+	 * @return the energy for each constraint range, by name
+	 */
+	public Map<String, Double> getEnergies() {
+		return energies;
+	}
+
+	/**
+	 * Writes the checkpoint. The file is written next to the target first and then
+	 * moved into place, so that a crash during writing leaves the previous
+	 * checkpoint intact.
+	 *
+	 * @param file the checkpoint file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(elapsedMillis);
+			out.writeLong(iterations);
+			out.writeLong(perturbations);
+			writeArray(out, energy);
+			writeArray(out, bestSolution);
+			out.writeInt(energies.size());
+			for (Map.Entry<String, Double> entry : energies.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeDouble(entry.getValue());
+			}
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a checkpoint written by write(File)
+	 *
+	 * @param file the checkpoint file
+	 * @return the checkpoint
+	 * @throws IOException
+	 */
+	public static NZSHM22_InversionCheckpoint read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			int version = in.readInt();
+			Preconditions.checkState(version == FORMAT_VERSION, "Unsupported checkpoint version %s in %s", version,
+					file);
+			long elapsedMillis = in.readLong();
+			long iterations = in.readLong();
+			long perturbations = in.readLong();
+			double[] energy = readArray(in);
+			double[] bestSolution = readArray(in);
+			int numEnergies = in.readInt();
+			Map<String, Double> energies = new LinkedHashMap<>();
+			for (int i = 0; i < numEnergies; i++) {
+				energies.put(in.readUTF(), in.readDouble());
+			}
+			return new NZSHM22_InversionCheckpoint(elapsedMillis, iterations, perturbations, energy, bestSolution,
+					energies);
+		}
+	}
+
+	private static void writeArray(DataOutputStream out, double[] values) throws IOException {
+		out.writeInt(values.length);
+		for (double value : values) {
+			out.writeDouble(value);
+		}
+	}
+
+	private static double[] readArray(DataInputStream in) throws IOException {
+		double[] values = new double[in.readInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readDouble();
+		}
+		return values;
+	}
+}
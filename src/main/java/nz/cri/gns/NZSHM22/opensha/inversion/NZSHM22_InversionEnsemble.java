@@ -0,0 +1,141 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The solutions of an ensemble of independent annealing chains run against the
+ * same inversion inputs, with aggregate statistics across the chains.
+ */
+public class NZSHM22_InversionEnsemble {
+
+	private final List<NZSHM22_InversionFaultSystemSolution> solutions;
+	private final List<Map<String, Double>> energies;
+
+	private final double[] meanRates;
+	private final double[] stdDevRates;
+	private final double[] minRates;
+	private final double[] maxRates;
+
+	/**
+	 * @param solutions the solution of each chain
+	 * @param energies  the final energies of each chain, by constraint range name
+	 */
+	public NZSHM22_InversionEnsemble(List<NZSHM22_InversionFaultSystemSolution> solutions,
+			List<Map<String, Double>> energies) {
+		Preconditions.checkArgument(!solutions.isEmpty(), "An ensemble needs at least one solution");
+		Preconditions.checkArgument(solutions.size() == energies.size());
+		this.solutions = solutions;
+		this.energies = energies;
+
+		int numRups = solutions.get(0).getRateForAllRups().length;
+		meanRates = new double[numRups];
+		stdDevRates = new double[numRups];
+		minRates = new double[numRups];
+		maxRates = new double[numRups];
+		for (int r = 0; r < numRups; r++) {
+			double sum = 0;
+			double sumSq = 0;
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (NZSHM22_InversionFaultSystemSolution solution : solutions) {
+				double rate = solution.getRateForRup(r);
+				sum += rate;
+				sumSq += rate * rate;
+				min = Math.min(min, rate);
+				max = Math.max(max, rate);
+			}
+			double mean = sum / solutions.size();
+			meanRates[r] = mean;
+			stdDevRates[r] = Math.sqrt(Math.max(0, sumSq / solutions.size() - mean * mean));
+			minRates[r] = min;
+			maxRates[r] = max;
+		}
+	}
+
+	public int getNumChains() {
+		return solutions.size();
+	}
+
+	public List<NZSHM22_InversionFaultSystemSolution> getSolutions() {
+		return solutions;
+	}
+
+	public NZSHM22_InversionFaultSystemSolution getSolution(int chain) {
+		return solutions.get(chain);
+	}
+
+	/**
+	 * @return the final energies of each chain, by constraint range name
+	 */
+	public List<Map<String, Double>> getEnergies() {
+		return energies;
+	}
+
+	public double[] getMeanRates() {
+		return meanRates;
+	}
+
+	public double[] getStdDevRates() {
+		return stdDevRates;
+	}
+
+	public double[] getMinRates() {
+		return minRates;
+	}
+
+	public double[] getMaxRates() {
+		return maxRates;
+	}
+
+	/**
+	 * Summarises the ensemble in the same style as the runner's solution metrics.
+	 *
+	 * @return the mean, min and max of each final energy across the chains, and
+	 *         the mean coefficient of variation of the rupture rates.
+	 */
+	public Map<String, String> getEnsembleMetrics() {
+		Map<String, String> metrics = new HashMap<>();
+		metrics.put("ensemble_chains", Integer.toString(solutions.size()));
+
+		TreeSet<String> rangeNames = new TreeSet<>();
+		for (Map<String, Double> chainEnergies : energies) {
+			rangeNames.addAll(chainEnergies.keySet());
+		}
+		for (String range : rangeNames) {
+			double sum = 0;
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			int count = 0;
+			for (Map<String, Double> chainEnergies : energies) {
+				Double energy = chainEnergies.get(range);
+				if (energy != null) {
+					sum += energy;
+					min = Math.min(min, energy);
+					max = Math.max(max, energy);
+					count++;
+				}
+			}
+			String metricName = "final_energy_" + range.replaceAll("\\s+", "_").toLowerCase();
+			metrics.put(metricName + "_mean", Double.toString(sum / count));
+			metrics.put(metricName + "_min", Double.toString(min));
+			metrics.put(metricName + "_max", Double.toString(max));
+		}
+
+		double sumCov = 0;
+		int numNonZero = 0;
+		for (int r = 0; r < meanRates.length; r++) {
+			if (meanRates[r] > 0) {
+				sumCov += stdDevRates[r] / meanRates[r];
+				numNonZero++;
+			}
+		}
+		metrics.put("ensemble_mean_rate_cov", Double.toString(numNonZero == 0 ? 0 : sumCov / numNonZero));
+
+		return metrics;
+	}
+}
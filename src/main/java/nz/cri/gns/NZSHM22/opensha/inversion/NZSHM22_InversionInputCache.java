@@ -0,0 +1,119 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.dom4j.Document;
+import org.opensha.commons.util.XMLUtils;
+import org.opensha.sha.earthquake.faultSysSolution.inversion.InversionInputGenerator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+
+import nz.cri.gns.NZSHM22.opensha.util.ContentHash;
+import scratch.UCERF3.FaultSystemRupSet;
+
+/**
+ * A content addressed on-disk cache of generated inversion inputs. Entries are
+ * keyed by a hash of the rupture set, the inversion configuration and the
+ * initial and water level rates, so a run with the same inputs but a different
+ * annealing time or thread count skips input generation.
+ */
+public class NZSHM22_InversionInputCache {
+
+	private final File cacheDir;
+
+	public NZSHM22_InversionInputCache(File cacheDir) {
+		Preconditions.checkArgument(cacheDir.isDirectory() || cacheDir.mkdirs(), "Cannot create cache directory %s",
+				cacheDir);
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * Returns the inputs for the generator from the cache, or generates and caches
+	 * them.
+	 *
+	 * @param rupSet         the rupture set the generator was built for
+	 * @param config         the inversion configuration the generator was built
+	 *                       with
+	 * @param inputGenerator the input generator
+	 * @return the inputs
+	 * @throws IOException
+	 */
+	public NZSHM22_InversionInputs getInputs(FaultSystemRupSet rupSet, AbstractInversionConfiguration config,
+			InversionInputGenerator inputGenerator) throws IOException {
+		String key = getKey(rupSet, config, inputGenerator);
+		File file = new File(cacheDir, "inversion_inputs_" + key + ".bin");
+		if (file.exists()) {
+			Stopwatch watch = Stopwatch.createStarted();
+			try {
+				NZSHM22_InversionInputs inputs = NZSHM22_InversionInputs.read(file);
+				System.out.println("Loaded cached inversion inputs from " + file + " in " + watch);
+				return inputs;
+			} catch (IOException | RuntimeException e) {
+				// a broken entry must not stop the inversion, the inputs are regenerated instead
+				System.err.println("Cannot load cached inversion inputs from " + file + ", regenerating: " + e);
+				file.delete();
+			}
+		}
+
+		NZSHM22_InversionInputs inputs = NZSHM22_InversionInputs.generate(inputGenerator);
+		File tmpFile = File.createTempFile("inversion_inputs_", ".tmp", cacheDir);
+		try {
+			inputs.write(tmpFile);
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			System.out.println("Cached inversion inputs in " + file);
+		} finally {
+			tmpFile.delete();
+		}
+		return inputs;
+	}
+
+	/**
+	 * Builds the cache key. This covers everything the NZSHM22 input generators
+	 * read: the per-section and per-rupture properties of the rupture set, the
+	 * configuration (weights and MFD constraints) and the initial and water level
+	 * rates.
+	 */
+	public static String getKey(FaultSystemRupSet rupSet, AbstractInversionConfiguration config,
+			InversionInputGenerator inputGenerator) {
+		ContentHash hash = new ContentHash();
+
+		hash.add(inputGenerator.getClass().getName());
+
+		hash.add(rupSet.getNumSections());
+		hash.add(rupSet.getSlipRateForAllSections());
+		hash.add(rupSet.getSlipRateStdDevForAllSections());
+		hash.add(rupSet.getAreaForAllSections());
+		hash.add(rupSet.getNumRuptures());
+		for (int r = 0; r < rupSet.getNumRuptures(); r++) {
+			hash.add(rupSet.getSectionsIndicesForRup(r));
+		}
+		hash.add(rupSet.getMagForAllRups());
+		hash.add(rupSet.getAreaForAllRups());
+		hash.add(rupSet.getRakeForAllRups());
+		if (rupSet instanceof NZSHM22_InversionFaultSystemRuptSet) {
+			NZSHM22_InversionFaultSystemRuptSet invRupSet = (NZSHM22_InversionFaultSystemRuptSet) rupSet;
+			hash.add(invRupSet.getAveSlipForAllRups());
+			for (int r = 0; r < rupSet.getNumRuptures(); r++) {
+				hash.add(invRupSet.isRuptureBelowSectMinMag(r));
+			}
+		}
+
+		Document doc = XMLUtils.createDocumentWithRoot();
+		config.toXMLMetadata(doc.getRootElement());
+		hash.add(doc.asXML());
+		hash.add(config.getNucleationMFDConstraintWt());
+		hash.add(config.getMFDTransitionMag());
+		hash.add(config.getSlipRateUncertaintyConstraintWt());
+		hash.add(config.getSlipRateUncertaintyConstraintScalingFactor());
+
+		hash.add(inputGenerator.getInitialSolution());
+		hash.add(inputGenerator.getWaterLevelRates());
+
+		return hash.toHex();
+	}
+}
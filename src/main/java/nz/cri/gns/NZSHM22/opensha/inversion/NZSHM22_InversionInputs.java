@@ -0,0 +1,415 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.opensha.sha.earthquake.faultSysSolution.inversion.InversionInputGenerator;
+
+import com.google.common.base.Preconditions;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
+import scratch.UCERF3.simulatedAnnealing.ConstraintRange;
+
+/**
+ * The generated inputs of an inversion: the column compressed A and A_ineq
+ * matrices, the d and d_ineq vectors, the constraint row ranges and the initial
+ * and water level rates.
+ *
+ * Inputs can be written to a binary file and read back through memory mapped
+ * buffers. Files are mapped in windows of up to 1GB, so files larger than 2GB
+ * can be read. The annealer needs SparseCCDoubleMatrix2D matrices, so reading
+ * still copies all arrays onto the heap. Mapping only saves the stream
+ * buffering and parsing of a stream based read.
+ */
+public class NZSHM22_InversionInputs {
+
+	private static final int MAGIC = 0x4e5a4949; // "NZII"
+	private static final int FORMAT_VERSION = 1;
+
+	private final DoubleMatrix2D A;
+	private final double[] d;
+	private final DoubleMatrix2D A_ineq;
+	private final double[] d_ineq;
+	private final List<ConstraintRange> constraintRowRanges;
+	private final double[] initialSolution;
+	private final double[] waterLevelRates;
+
+	public NZSHM22_InversionInputs(DoubleMatrix2D A, double[] d, DoubleMatrix2D A_ineq, double[] d_ineq,
+			List<ConstraintRange> constraintRowRanges, double[] initialSolution, double[] waterLevelRates) {
+		this.A = A;
+		this.d = d;
+		this.A_ineq = A_ineq;
+		this.d_ineq = d_ineq;
+		this.constraintRowRanges = constraintRowRanges;
+		this.initialSolution = initialSolution;
+		this.waterLevelRates = waterLevelRates;
+	}
+
+	/**
+	 * Generates and column compresses the inputs of the input generator.
+	 *
+	 * @param inputGenerator the input generator
+	 * @return the inputs
+	 */
+	public static NZSHM22_InversionInputs generate(InversionInputGenerator inputGenerator) {
+		inputGenerator.generateInputs(true);
+		// column compress it for fast annealing
+		inputGenerator.columnCompress();
+		return new NZSHM22_InversionInputs(inputGenerator.getA(), inputGenerator.getD(), inputGenerator.getA_ineq(),
+				inputGenerator.getD_ineq(), inputGenerator.getConstraintRowRanges(),
+				inputGenerator.getInitialSolution(), inputGenerator.getWaterLevelRates());
+	}
+
+	public DoubleMatrix2D getA() {
+		return A;
+	}
+
+	public double[] getD() {
+		return d;
+	}
+
+	public DoubleMatrix2D getA_ineq() {
+		return A_ineq;
+	}
+
+	public double[] getD_ineq() {
+		return d_ineq;
+	}
+
+	public List<ConstraintRange> getConstraintRowRanges() {
+		return constraintRowRanges;
+	}
+
+	public double[] getInitialSolution() {
+		return initialSolution;
+	}
+
+	public double[] getWaterLevelRates() {
+		return waterLevelRates;
+	}
+
+	/**
+	 * Adds the water level rates to a solution from the annealer, like
+	 * InversionInputGenerator.adjustSolutionForWaterLevel().
+	 *
+	 * @param solution the annealed rates above the water level
+	 * @return the rates
+	 */
+	public double[] adjustSolutionForWaterLevel(double[] solution) {
+		double[] adjusted = Arrays.copyOf(solution, solution.length);
+		if (waterLevelRates != null) {
+			for (int r = 0; r < adjusted.length; r++) {
+				adjusted[r] += waterLevelRates[r];
+			}
+		}
+		return adjusted;
+	}
+
+	/**
+	 * Returns a copy of these inputs where the rows of each named constraint range
+	 * are multiplied by a scale, which is the same as multiplying the weight of
+	 * that constraint. Copying the matrix values is much cheaper than generating
+	 * the inputs again, so a weight sweep only needs to generate them once.
+	 *
+	 * @param rangeScales the scale of each range by ConstraintRange name. Ranges
+	 *                    that are not in the map are not changed.
+	 * @return the scaled inputs, which share the initial and water level rates
+	 *         with these inputs
+	 */
+	public NZSHM22_InversionInputs scaleRanges(Map<String, Double> rangeScales) {
+		double[] rowScales = new double[d.length];
+		Arrays.fill(rowScales, 1);
+		double[] rowScalesIneq = null;
+		if (d_ineq != null) {
+			rowScalesIneq = new double[d_ineq.length];
+			Arrays.fill(rowScalesIneq, 1);
+		}
+
+		for (Map.Entry<String, Double> entry : rangeScales.entrySet()) {
+			ConstraintRange range = constraintRowRanges.stream()
+					.filter(candidate -> candidate.name.equals(entry.getKey()))
+					.findFirst()
+					.orElseThrow(() -> new IllegalArgumentException("Unknown constraint range " + entry.getKey()));
+			Preconditions.checkArgument(entry.getValue() >= 0, "Scale of %s must not be negative", range.name);
+			Arrays.fill(range.inequality ? rowScalesIneq : rowScales, range.startRow, range.endRow, entry.getValue());
+		}
+
+		return new NZSHM22_InversionInputs(scaleRows(A, rowScales), scaleRows(d, rowScales),
+				scaleRows(A_ineq, rowScalesIneq), scaleRows(d_ineq, rowScalesIneq), constraintRowRanges,
+				initialSolution, waterLevelRates);
+	}
+
+	private static DoubleMatrix2D scaleRows(DoubleMatrix2D matrix, double[] rowScales) {
+		if (matrix == null) {
+			return null;
+		}
+		DoubleMatrix2D scaled = matrix.copy();
+		scaled.forEachNonZero((row, column, value) -> value * rowScales[row]);
+		return scaled;
+	}
+
+	private static double[] scaleRows(double[] vector, double[] rowScales) {
+		if (vector == null) {
+			return null;
+		}
+		double[] scaled = new double[vector.length];
+		for (int row = 0; row < vector.length; row++) {
+			scaled[row] = vector[row] * rowScales[row];
+		}
+		return scaled;
+	}
+
+	/**
+	 * Writes the inputs to a binary file. Matrices must be column compressed.
+	 *
+	 * @param file the file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 20))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(constraintRowRanges.size());
+			for (ConstraintRange range : constraintRowRanges) {
+				writeString(out, range.name);
+				writeString(out, range.shortName);
+				out.writeInt(range.startRow);
+				out.writeInt(range.endRow);
+				out.writeBoolean(range.inequality);
+			}
+			writeMatrix(out, A);
+			writeArray(out, d);
+			writeMatrix(out, A_ineq);
+			writeArray(out, d_ineq);
+			writeArray(out, initialSolution);
+			writeArray(out, waterLevelRates);
+		}
+	}
+
+	/**
+	 * Reads inputs written by write(File) through memory mapped buffers.
+	 *
+	 * @param file the file
+	 * @return the inputs
+	 * @throws IOException
+	 */
+	public static NZSHM22_InversionInputs read(File file) throws IOException {
+		return read(file, MappedReader.WINDOW_SIZE);
+	}
+
+	static NZSHM22_InversionInputs read(File file, int windowSize) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedReader buffer = new MappedReader(channel, windowSize);
+			Preconditions.checkState(buffer.getInt() == MAGIC, "Not an inversion input file: %s", file);
+			int version = buffer.getInt();
+			Preconditions.checkState(version == FORMAT_VERSION, "Unsupported inversion input version %s in %s",
+					version, file);
+			int numRanges = buffer.getInt();
+			List<ConstraintRange> ranges = new ArrayList<>();
+			for (int i = 0; i < numRanges; i++) {
+				String name = readString(buffer);
+				String shortName = readString(buffer);
+				int startRow = buffer.getInt();
+				int endRow = buffer.getInt();
+				boolean inequality = buffer.get() != 0;
+				ranges.add(new ConstraintRange(name, shortName, startRow, endRow, inequality));
+			}
+			DoubleMatrix2D A = readMatrix(buffer);
+			double[] d = readArray(buffer);
+			DoubleMatrix2D A_ineq = readMatrix(buffer);
+			double[] d_ineq = readArray(buffer);
+			double[] initialSolution = readArray(buffer);
+			double[] waterLevelRates = readArray(buffer);
+			Preconditions.checkState(buffer.isAtEnd(), "Trailing data in inversion input file %s", file);
+			return new NZSHM22_InversionInputs(A, d, A_ineq, d_ineq, ranges, initialSolution, waterLevelRates);
+		}
+	}
+
+	/**
+	 * Reads a file through a sequence of memory mapped windows. A new window is
+	 * mapped at the current position whenever the current one cannot hold the next
+	 * value, so values never straddle two windows.
+	 */
+	static class MappedReader {
+		static final int WINDOW_SIZE = 1 << 30;
+
+		private final FileChannel channel;
+		private final int windowSize;
+		private MappedByteBuffer window;
+		private long windowStart = 0;
+
+		MappedReader(FileChannel channel, int windowSize) throws IOException {
+			Preconditions.checkArgument(windowSize >= Double.BYTES);
+			this.channel = channel;
+			this.windowSize = windowSize;
+			map(0);
+		}
+
+		private void map(long position) throws IOException {
+			long size = Math.min(windowSize, channel.size() - position);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			windowStart = position;
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (window.remaining() < bytes) {
+				map(windowStart + window.position());
+				if (window.remaining() < bytes) {
+					throw new EOFException();
+				}
+			}
+		}
+
+		byte get() throws IOException {
+			ensure(1);
+			return window.get();
+		}
+
+		int getInt() throws IOException {
+			ensure(Integer.BYTES);
+			return window.getInt();
+		}
+
+		void get(byte[] values) throws IOException {
+			int offset = 0;
+			while (offset < values.length) {
+				ensure(1);
+				int count = Math.min(window.remaining(), values.length - offset);
+				window.get(values, offset, count);
+				offset += count;
+			}
+		}
+
+		void get(int[] values) throws IOException {
+			int offset = 0;
+			while (offset < values.length) {
+				ensure(Integer.BYTES);
+				int count = Math.min(window.remaining() / Integer.BYTES, values.length - offset);
+				window.asIntBuffer().get(values, offset, count);
+				window.position(window.position() + count * Integer.BYTES);
+				offset += count;
+			}
+		}
+
+		void get(double[] values) throws IOException {
+			int offset = 0;
+			while (offset < values.length) {
+				ensure(Double.BYTES);
+				int count = Math.min(window.remaining() / Double.BYTES, values.length - offset);
+				window.asDoubleBuffer().get(values, offset, count);
+				window.position(window.position() + count * Double.BYTES);
+				offset += count;
+			}
+		}
+
+		boolean isAtEnd() throws IOException {
+			return windowStart + window.position() == channel.size();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedReader buffer) throws IOException {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeArray(DataOutputStream out, double[] values) throws IOException {
+		if (values == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.length);
+		for (double value : values) {
+			out.writeDouble(value);
+		}
+	}
+
+	private static double[] readArray(MappedReader buffer) throws IOException {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		double[] values = new double[length];
+		buffer.get(values);
+		return values;
+	}
+
+	private static void writeIntArray(DataOutputStream out, int[] values, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			out.writeInt(values[i]);
+		}
+	}
+
+	private static int[] readIntArray(MappedReader buffer, int length) throws IOException {
+		int[] values = new int[length];
+		buffer.get(values);
+		return values;
+	}
+
+	/**
+	 * Writes a column compressed matrix as rows, columns, non-zero count, column
+	 * pointers, row indexes and values.
+	 */
+	private static void writeMatrix(DataOutputStream out, DoubleMatrix2D matrix) throws IOException {
+		if (matrix == null) {
+			out.writeInt(-1);
+			return;
+		}
+		Preconditions.checkState(matrix instanceof SparseCCDoubleMatrix2D,
+				"Only column compressed matrices can be written, got %s", matrix.getClass().getName());
+		SparseCCDoubleMatrix2D ccMatrix = (SparseCCDoubleMatrix2D) matrix;
+		int[] columnPointers = ccMatrix.getColumnPointers();
+		int numNonZero = columnPointers[ccMatrix.columns()];
+		out.writeInt(ccMatrix.rows());
+		out.writeInt(ccMatrix.columns());
+		out.writeInt(numNonZero);
+		writeIntArray(out, columnPointers, ccMatrix.columns() + 1);
+		writeIntArray(out, ccMatrix.getRowIndexes(), numNonZero);
+		double[] values = ccMatrix.getValues();
+		for (int i = 0; i < numNonZero; i++) {
+			out.writeDouble(values[i]);
+		}
+	}
+
+	private static DoubleMatrix2D readMatrix(MappedReader buffer) throws IOException {
+		int rows = buffer.getInt();
+		if (rows < 0) {
+			return null;
+		}
+		int columns = buffer.getInt();
+		int numNonZero = buffer.getInt();
+		int[] columnPointers = readIntArray(buffer, columns + 1);
+		int[] rowIndexes = readIntArray(buffer, numNonZero);
+		double[] values = new double[numNonZero];
+		buffer.get(values);
+
+		// expand the column pointers so the matrix can be built from triplets
+		int[] columnIndexes = new int[numNonZero];
+		for (int c = 0; c < columns; c++) {
+			for (int i = columnPointers[c]; i < columnPointers[c + 1]; i++) {
+				columnIndexes[i] = c;
+			}
+		}
+		return new SparseCCDoubleMatrix2D(rows, columns, rowIndexes, columnIndexes, values, false, false, false);
+	}
+}
@@ -0,0 +1,111 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dom4j.DocumentException;
+
+import com.google.common.base.Preconditions;
+
+import scratch.UCERF3.FaultSystemRupSet;
+import scratch.UCERF3.FaultSystemSolution;
+import scratch.UCERF3.utils.FaultSystemIO;
+
+/**
+ * Builds the starting state of an inversion from the rates of a previous
+ * solution. Ruptures are matched by their set of section IDs, so the previous
+ * solution may come from a rupture set with different rupture indexes.
+ */
+public class NZSHM22_WarmStart {
+
+	/**
+	 * Loads a solution and maps its rates onto a rupture set.
+	 *
+	 * @param solutionFile    the previous solution
+	 * @param rupSet          the rupture set of the inversion to start
+	 * @param fallbackRates   the starting rates for ruptures that are not in the
+	 *                        previous solution
+	 * @param waterLevelRates the water level rates of the inversion to start, or
+	 *                        null
+	 * @return the starting state
+	 * @throws IOException
+	 * @throws DocumentException
+	 */
+	public static double[] fromSolution(File solutionFile, FaultSystemRupSet rupSet, double[] fallbackRates,
+			double[] waterLevelRates) throws IOException, DocumentException {
+		FaultSystemSolution solution = FaultSystemIO.loadSol(solutionFile);
+		return remapRates(solution.getRupSet(), solution.getRateForAllRups(), rupSet, fallbackRates,
+				waterLevelRates);
+	}
+
+	/**
+	 * Maps rates from one rupture set to another. Solution rates include the water
+	 * level, whereas the annealer works on rates above the water level, so the
+	 * water level is subtracted from matched rates.
+	 *
+	 * @param fromRupSet      the rupture set of the rates
+	 * @param fromRates       the rates
+	 * @param toRupSet        the rupture set to map to
+	 * @param fallbackRates   the rates for ruptures that are not matched
+	 * @param waterLevelRates the water level rates of toRupSet, or null
+	 * @return the mapped rates
+	 */
+	public static double[] remapRates(FaultSystemRupSet fromRupSet, double[] fromRates, FaultSystemRupSet toRupSet,
+			double[] fallbackRates, double[] waterLevelRates) {
+		Preconditions.checkArgument(fallbackRates.length == toRupSet.getNumRuptures());
+
+		Map<RuptureKey, Integer> fromIndexes = new HashMap<>();
+		for (int r = 0; r < fromRupSet.getNumRuptures(); r++) {
+			fromIndexes.put(new RuptureKey(fromRupSet, r), r);
+		}
+
+		double[] rates = Arrays.copyOf(fallbackRates, fallbackRates.length);
+		int matched = 0;
+		for (int r = 0; r < toRupSet.getNumRuptures(); r++) {
+			Integer fromIndex = fromIndexes.get(new RuptureKey(toRupSet, r));
+			if (fromIndex != null) {
+				double rate = fromRates[fromIndex];
+				if (waterLevelRates != null) {
+					rate = Math.max(0, rate - waterLevelRates[r]);
+				}
+				rates[r] = rate;
+				matched++;
+			}
+		}
+		System.out.println("Warm start matched " + matched + " of " + toRupSet.getNumRuptures()
+				+ " ruptures to the previous solution's " + fromRupSet.getNumRuptures() + " ruptures");
+		return rates;
+	}
+
+	/**
+	 * The sorted section IDs of a rupture.
+	 */
+	static class RuptureKey {
+		final int[] sectionIds;
+		final int hashCode;
+
+		RuptureKey(FaultSystemRupSet rupSet, int rupIndex) {
+			List<Integer> sectIndexes = rupSet.getSectionsIndicesForRup(rupIndex);
+			sectionIds = new int[sectIndexes.size()];
+			for (int i = 0; i < sectionIds.length; i++) {
+				sectionIds[i] = rupSet.getFaultSectionData(sectIndexes.get(i)).getSectionId();
+			}
+			Arrays.sort(sectionIds);
+			hashCode = Arrays.hashCode(sectionIds);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof RuptureKey && Arrays.equals(sectionIds, ((RuptureKey) obj).sectionIds);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Keeps the most recent telemetry records in memory so that they can be polled
+ * from another thread, for example by a python client through the gateway while
+ * runInversion() is running.
+ */
+public class RingBufferTelemetrySink implements InversionTelemetryListener {
+
+	private final int capacity;
+	private final ArrayDeque<InversionTelemetryRecord> records;
+	private long received = 0;
+	private long polled = 0;
+	private boolean finished = false;
+
+	/**
+	 * @param capacity the number of records to keep
+	 */
+	public RingBufferTelemetrySink(int capacity) {
+		Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+		this.capacity = capacity;
+		this.records = new ArrayDeque<>(capacity);
+	}
+
+	@Override
+	public synchronized void onSync(InversionTelemetryRecord record) {
+		if (records.size() == capacity) {
+			records.removeFirst();
+		}
+		records.addLast(record);
+		received++;
+		finished = false;
+	}
+
+	@Override
+	public synchronized void onFinish() {
+		finished = true;
+	}
+
+	/**
+	 * @return all records in the buffer, oldest first
+	 */
+	public synchronized List<InversionTelemetryRecord> getRecords() {
+		return new ArrayList<>(records);
+	}
+
+	/**
+	 * @return the most recent record, or null if there is none
+	 */
+	public synchronized InversionTelemetryRecord getLatest() {
+		return records.peekLast();
+	}
+
+	/**
+	 * Returns the records received since the previous call to poll(). Records
+	 * that have been pushed out of the buffer in the meantime are lost.
+	 *
+	 * @return the new records, oldest first
+	 */
+	public synchronized List<InversionTelemetryRecord> poll() {
+		int numNew = (int) Math.min(received - polled, records.size());
+		List<InversionTelemetryRecord> all = new ArrayList<>(records);
+		polled = received;
+		return new ArrayList<>(all.subList(all.size() - numNew, all.size()));
+	}
+
+	/**
+	 * @return true if the inversion that feeds this buffer has finished
+	 */
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+}
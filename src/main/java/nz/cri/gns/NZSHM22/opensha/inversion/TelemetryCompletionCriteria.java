@@ -0,0 +1,83 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import scratch.UCERF3.simulatedAnnealing.ConstraintRange;
+import scratch.UCERF3.simulatedAnnealing.completion.CompletionCriteria;
+
+/**
+ * A completion criteria that never completes, but sends a telemetry record to
+ * its listeners every time the annealer checks for completion, which is once
+ * per sync interval.
+ */
+public class TelemetryCompletionCriteria implements CompletionCriteria {
+
+	private final List<InversionTelemetryListener> listeners;
+	private long lastIter = 0;
+	private long lastMillis = 0;
+
+	public TelemetryCompletionCriteria(List<InversionTelemetryListener> listeners) {
+		this.listeners = listeners;
+	}
+
+	@Override
+	public boolean isSatisfied(StopWatch watch, long iter, double[] energy, long numPerturbsKept, int numNonZero,
+			double[] misfits, double[] misfits_ineq, List<ConstraintRange> constraintRanges) {
+		long millis = watch.getTime();
+		double perturbationsPerSecond = 0;
+		if (millis > lastMillis) {
+			perturbationsPerSecond = (iter - lastIter) * 1000d / (millis - lastMillis);
+		}
+		lastIter = iter;
+		lastMillis = millis;
+
+		InversionTelemetryRecord record = new InversionTelemetryRecord(System.currentTimeMillis(), millis, iter,
+				perturbationsPerSecond, numPerturbsKept, iter - numPerturbsKept, numNonZero, energy[0],
+				calcRangeEnergies(misfits, misfits_ineq, constraintRanges));
+		for (InversionTelemetryListener listener : listeners) {
+			listener.onSync(record);
+		}
+		return false;
+	}
+
+	/**
+	 * Calculates the energy of each constraint range from the misfits in the same
+	 * way as ThreadedSimulatedAnnealing.getEnergies(): the sum of squared misfits,
+	 * counting only positive misfits for inequality constraints.
+	 *
+	 * @return the energy of each range by name, or an empty map if the ranges are
+	 *         not known.
+	 */
+	static Map<String, Double> calcRangeEnergies(double[] misfits, double[] misfits_ineq,
+			List<ConstraintRange> constraintRanges) {
+		Map<String, Double> energies = new LinkedHashMap<>();
+		if (constraintRanges == null) {
+			return energies;
+		}
+		for (ConstraintRange range : constraintRanges) {
+			double[] rangeMisfits = range.inequality ? misfits_ineq : misfits;
+			if (rangeMisfits == null) {
+				continue;
+			}
+			double energy = 0;
+			for (int row = range.startRow; row < range.endRow; row++) {
+				double misfit = rangeMisfits[row];
+				if (range.inequality && misfit < 0) {
+					continue;
+				}
+				energy += misfit * misfit;
+			}
+			energies.put(range.name, energy);
+		}
+		return energies;
+	}
+
+	@Override
+	public String toString() {
+		return "TelemetryCompletionCriteria(" + listeners.size() + " listeners)";
+	}
+}
@@ -1,5 +1,6 @@
 package nz.cri.gns.NZSHM22.opensha.ruptures;
 
+import com.google.common.base.Preconditions;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
@@ -14,31 +15,26 @@ import java.util.*;
 public class FaultIdFilter implements PlausibilityFilter {
 
 	public enum FilterType {
-		ANY, ALL, EXACT
+		ANY, ALL, EXACT, WITHIN
 	}
 
-	public interface PlausibilityPredicate {
-		PlausibilityResult test(Set<Integer> faultIds);
-	}
-
-	private static boolean intersects(Set<Integer> a, Set<Integer> b) {
-		Set<Integer> base = a.size() < b.size() ? a : b;
-		Set<Integer> other = a.size() < b.size() ? b : a;
-		for (Integer i : base) {
-			if (other.contains(i)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private final PlausibilityPredicate predicate;
 	private final FilterType filterType; // this is only stored here so that it gets documented in the rupture set zip
 											// file
+	// transient so that they are not documented in the rupture set zip file
+	private final transient BitSet faultIds;
+	private final transient int numFaultIds;
+	// parents of the current rupture that are in faultIds, used to count distinct parents without allocation
+	private final transient ThreadLocal<BitSet> seenIds;
 
-	private FaultIdFilter(PlausibilityPredicate filter, FilterType filterType) {
-		this.predicate = filter;
+	private FaultIdFilter(FilterType filterType, Set<Integer> faultIds) {
 		this.filterType = filterType;
+		this.faultIds = new BitSet();
+		for (Integer id : faultIds) {
+			Preconditions.checkArgument(id >= 0, "Fault ids must not be negative");
+			this.faultIds.set(id);
+		}
+		this.numFaultIds = this.faultIds.cardinality();
+		this.seenIds = ThreadLocal.withInitial(BitSet::new);
 	}
 
 	/**
@@ -47,27 +43,17 @@ public class FaultIdFilter implements PlausibilityFilter {
 	 * faults in faultIds. ALL: Creates a FaultIdFilter that will only accept
 	 * ruptures that contain all of the faults in faultIds. EXACT: Creates a
 	 * FaultIdFilter that will only accept ruptures that contain exactly the faults
-	 * in faultIds.
+	 * in faultIds. WITHIN: Creates a FaultIdFilter that will only accept ruptures
+	 * that contain no faults other than those in faultIds, and stops growing
+	 * ruptures as soon as they reach another fault.
 	 *
 	 * @param filterType the type of the filter
 	 * @param faultIds   a set of fault ids
 	 * @return a FaultIdFilter
 	 */
 	public static FaultIdFilter create(FilterType filterType, Set<Integer> faultIds) {
-		switch (filterType) {
-		case ANY:
-			return new FaultIdFilter(ruptureFaults -> intersects(ruptureFaults, faultIds) ? PlausibilityResult.PASS
-					: PlausibilityResult.FAIL_FUTURE_POSSIBLE, FilterType.ANY);
-		case ALL:
-			return new FaultIdFilter(ruptureFaults -> ruptureFaults.containsAll(faultIds) ? PlausibilityResult.PASS
-					: PlausibilityResult.FAIL_FUTURE_POSSIBLE, FilterType.ALL);
-		case EXACT:
-			return new FaultIdFilter(ruptureFaults -> ruptureFaults.equals(faultIds) ? PlausibilityResult.PASS
-					: faultIds.containsAll(ruptureFaults) ? PlausibilityResult.FAIL_FUTURE_POSSIBLE
-							: PlausibilityResult.FAIL_HARD_STOP,
-					FilterType.EXACT);
-		}
-		throw new IllegalStateException("We should not be able to get here");
+		Preconditions.checkNotNull(filterType);
+		return new FaultIdFilter(filterType, faultIds);
 	}
 
 	@Override
@@ -80,20 +66,95 @@ public class FaultIdFilter implements PlausibilityFilter {
 		return getShortName();
 	}
 
-	private Set<Integer> clusterRuptureIds(ClusterRupture cr) {
-		Set<Integer> ids = new HashSet<>();
-		for (FaultSubsectionCluster cluster : cr.clusters) {
-			ids.add(cluster.parentSectionID);
+	private boolean contains(int id) {
+		return id >= 0 && faultIds.get(id);
+	}
+
+	/**
+	 * @return whether any parent of the rupture is in faultIds
+	 */
+	private boolean anyParentIn(ClusterRupture rupture) {
+		for (FaultSubsectionCluster cluster : rupture.clusters) {
+			if (contains(cluster.parentSectionID)) {
+				return true;
+			}
+		}
+		if (!rupture.splays.isEmpty()) {
+			for (ClusterRupture splay : rupture.splays.values()) {
+				if (anyParentIn(splay)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether all parents of the rupture are in faultIds
+	 */
+	private boolean allParentsIn(ClusterRupture rupture) {
+		for (FaultSubsectionCluster cluster : rupture.clusters) {
+			if (!contains(cluster.parentSectionID)) {
+				return false;
+			}
+		}
+		if (!rupture.splays.isEmpty()) {
+			for (ClusterRupture splay : rupture.splays.values()) {
+				if (!allParentsIn(splay)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the distinct parents of the rupture that are in faultIds, stopping once all are
+	 * found.
+	 */
+	private int countParentsIn(ClusterRupture rupture, BitSet seen, int count) {
+		for (FaultSubsectionCluster cluster : rupture.clusters) {
+			int id = cluster.parentSectionID;
+			if (contains(id) && !seen.get(id)) {
+				seen.set(id);
+				if (++count == numFaultIds) {
+					return count;
+				}
+			}
 		}
-		for (ClusterRupture splay : cr.splays.values()) {
-			ids.addAll(clusterRuptureIds(splay));
+		if (!rupture.splays.isEmpty()) {
+			for (ClusterRupture splay : rupture.splays.values()) {
+				count = countParentsIn(splay, seen, count);
+				if (count == numFaultIds) {
+					return count;
+				}
+			}
 		}
-		return ids;
+		return count;
+	}
+
+	private boolean containsAllFaultIds(ClusterRupture rupture) {
+		BitSet seen = seenIds.get();
+		seen.clear();
+		return countParentsIn(rupture, seen, 0) == numFaultIds;
 	}
 
 	@Override
 	public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
-		return predicate.test(clusterRuptureIds(rupture));
+		switch (filterType) {
+		case ANY:
+			return anyParentIn(rupture) ? PlausibilityResult.PASS : PlausibilityResult.FAIL_FUTURE_POSSIBLE;
+		case ALL:
+			return containsAllFaultIds(rupture) ? PlausibilityResult.PASS : PlausibilityResult.FAIL_FUTURE_POSSIBLE;
+		case EXACT:
+			if (!allParentsIn(rupture)) {
+				return PlausibilityResult.FAIL_HARD_STOP;
+			}
+			return containsAllFaultIds(rupture) ? PlausibilityResult.PASS : PlausibilityResult.FAIL_FUTURE_POSSIBLE;
+		case WITHIN:
+			return allParentsIn(rupture) ? PlausibilityResult.PASS : PlausibilityResult.FAIL_HARD_STOP;
+		}
+		throw new IllegalStateException("We should not be able to get here");
 	}
 
 }
@@ -30,7 +30,7 @@ public class FilteredFaultSystemRuptureSet {
 	 */
 	public FaultSystemRupSet create(FaultSystemRupSet rupSet, List<FaultSection> selectedSubSects) {
 		
-		List<List<Integer>>	filterSectionIndicesForAllRups = new ArrayList<List<Integer>>();//rupSet.getSectionIndicesForAllRups()
+		NZSHM22_RuptureSectionStore.Builder filterSectionIndicesForAllRups = new NZSHM22_RuptureSectionStore.Builder();//rupSet.getSectionIndicesForAllRups()
 		
 		List<Double> filterMagForAllRups = new ArrayList<Double>(); //rupSet.getMagForAllRups()
 		List<Double> filterAveRakeForAllRups = new ArrayList<Double>(); //rupSet.getAveRakeForAllRups()
@@ -78,7 +78,7 @@ public class FilteredFaultSystemRuptureSet {
 		FaultSystemRupSet filterRupSet = new FaultSystemRupSet(rupSet.getFaultSectionDataList(), 
 				rupSet.getSlipRateForAllSections(),
 				rupSet.getSlipRateStdDevForAllSections(), rupSet.getAreaForAllSections(),
-				filterSectionIndicesForAllRups, mags, rakes, areas, lengths, rupSet.getInfoString());
+				filterSectionIndicesForAllRups.build(), mags, rakes, areas, lengths, rupSet.getInfoString());
 		filterRupSet.setClusterRuptures(ruptures);
 		return filterRupSet;
 	}
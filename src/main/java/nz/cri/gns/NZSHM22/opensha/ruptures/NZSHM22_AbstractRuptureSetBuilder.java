@@ -1,5 +1,6 @@
 package nz.cri.gns.NZSHM22.opensha.ruptures;
 
+import com.google.common.base.Preconditions;
 import nz.cri.gns.NZSHM22.opensha.enumTreeBranches.NZSHM22_DeformationModels;
 import nz.cri.gns.NZSHM22.opensha.enumTreeBranches.NZSHM22_FaultModels;
 import nz.cri.gns.NZSHM22.opensha.ruptures.downDip.DownDipSubSectBuilder;
@@ -8,15 +9,21 @@ import org.dom4j.DocumentException;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRuptureBuilder;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityConfiguration;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.util.SectionDistanceAzimuthCalculator;
 import org.opensha.sha.faultSurface.FaultSection;
+import scratch.UCERF3.FaultSystemRupSet;
 import scratch.UCERF3.enumTreeBranches.FaultModels;
 import scratch.UCERF3.enumTreeBranches.ScalingRelationships;
 import scratch.UCERF3.enumTreeBranches.SlipAlongRuptureModels;
+import scratch.UCERF3.utils.FaultSystemIO;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class NZSHM22_AbstractRuptureSetBuilder {
@@ -41,6 +48,20 @@ public abstract class NZSHM22_AbstractRuptureSetBuilder {
     long skipFaultSections = 0; // skip n fault ruptures, default 0"
     double maxSubSectionLength = 0.5; // maximum sub section length (in units of DDW)
     int numThreads = Runtime.getRuntime().availableProcessors(); // use all available processors
+    File distAzCacheDir = null;
+    NZSHM22_BuildStageTimer stageTimer = new NZSHM22_BuildStageTimer();
+    boolean keepClusterRuptures = true;
+    File previousRuptureSetFile = null;
+    NZSHM22_IncrementalRebuild incrementalRebuild = null;
+    double estimateSampleFraction = 0;
+    long estimateSeed;
+    Set<Integer> estimateSampleSections = null;
+    long estimateBaselineHeap;
+    NZSHM22_RuptureSetEstimate estimate = null;
+    boolean precomputeDistAz = false;
+    boolean profileFilters = false;
+    NZSHM22_FilterProfile filterProfile = null;
+    final NZSHM22_BuildProgress progress = new NZSHM22_BuildProgress();
 
 	protected ScalingRelationships scalingRelationship = ScalingRelationships.SHAW_2009_MOD;
 	protected SlipAlongRuptureModels slipAlongRuptureModel = SlipAlongRuptureModels.UNIFORM;
@@ -213,6 +234,167 @@ public abstract class NZSHM22_AbstractRuptureSetBuilder {
         return this;
     }
 
+    /**
+     * Keeps section distances and azimuths in a memory mapped file in this directory, so that
+     * they are shared between builds with the same subsections. Models with more than about
+     * 16,000 subsections are too large for a mapped table and calculate them in memory.
+     *
+     * @param distAzCacheDir the cache directory, or null to calculate them in memory
+     * @return NZSHM22_RuptureSetBuilder the builder
+     */
+    public NZSHM22_AbstractRuptureSetBuilder setDistAzCacheDir(File distAzCacheDir) {
+        this.distAzCacheDir = distAzCacheDir;
+        return this;
+    }
+
+    /**
+     * @param distAzCacheDirName the name of the dist/az cache directory
+     * @return NZSHM22_RuptureSetBuilder the builder
+     */
+    public NZSHM22_AbstractRuptureSetBuilder setDistAzCacheDir(String distAzCacheDirName) {
+        return setDistAzCacheDir(new File(distAzCacheDirName));
+    }
+
+    /**
+     * @param precomputeDistAz whether to calculate all distances and azimuths up front when
+     *                         a dist/az cache directory is set. Otherwise only the pairs the
+     *                         build asks for are calculated and added to the cache.
+     * @return NZSHM22_RuptureSetBuilder the builder
+     */
+    public NZSHM22_AbstractRuptureSetBuilder setPrecomputeDistAz(boolean precomputeDistAz) {
+        this.precomputeDistAz = precomputeDistAz;
+        return this;
+    }
+
+    /**
+     * Profiles the plausibility filters while growing ruptures. The profile is printed after
+     * the build, and can be written next to the rupture set with writeFilterProfile().
+     *
+     * @param profileFilters whether to count the calls, time and results of each filter
+     * @return NZSHM22_RuptureSetBuilder the builder
+     */
+    public NZSHM22_AbstractRuptureSetBuilder setProfileFilters(boolean profileFilters) {
+        this.profileFilters = profileFilters;
+        return this;
+    }
+
+    /**
+     * By default the builder and the rupture set keep all ClusterRuptures, so that getRuptures()
+     * works after the build and the ruptures are written to the rupture set file. For large
+     * rupture sets, turning this off releases each ClusterRupture as soon as the rupture set
+     * has its sections and properties, so that the ruptures and the rupture set are not held in
+     * memory at the same time. getRuptures() then returns null after the build, and the rupture
+     * set file has no cluster ruptures.
+     *
+     * @param keepClusterRuptures whether to keep the ClusterRuptures after the build
+     * @return NZSHM22_RuptureSetBuilder the builder
+     */
+    public NZSHM22_AbstractRuptureSetBuilder setKeepClusterRuptures(boolean keepClusterRuptures) {
+        this.keepClusterRuptures = keepClusterRuptures;
+        return this;
+    }
+
+    /**
+     * Rebuilds incrementally from a rupture set that was built from a previous revision of the
+     * fault model with the same settings. Ruptures that only contain unchanged parent faults are
+     * taken from the previous rupture set, and only ruptures that touch changed parent faults are
+     * grown. See NZSHM22_IncrementalRebuild.
+     *
+     * @param previousRuptureSetFile the previous rupture set, or null for a full build
+     * @return NZSHM22_RuptureSetBuilder the builder
+     */
+    public NZSHM22_AbstractRuptureSetBuilder setPreviousRuptureSet(File previousRuptureSetFile) {
+        this.previousRuptureSetFile = previousRuptureSetFile;
+        return this;
+    }
+
+    /**
+     * @param previousRuptureSetFileName the file name of the previous rupture set
+     * @return NZSHM22_RuptureSetBuilder the builder
+     */
+    public NZSHM22_AbstractRuptureSetBuilder setPreviousRuptureSet(String previousRuptureSetFileName) {
+        return setPreviousRuptureSet(new File(previousRuptureSetFileName));
+    }
+
+    /**
+     * Filters that are only applied while growing ruptures, and that are not part of the
+     * configuration stored with the rupture set.
+     *
+     * @param config the configuration of the rupture set
+     * @return the filters, applied after the filters of the configuration
+     */
+    protected List<PlausibilityFilter> getGrowthFilters(PlausibilityConfiguration config) {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Creates the configuration that the ClusterRuptureBuilder grows ruptures with. This is the
+     * configuration of the rupture set plus growth filters for thinning, estimates,
+     * incremental builds, filter profiling and build progress.
+     *
+     * @param config the configuration of the rupture set
+     * @return the growth configuration
+     */
+    protected PlausibilityConfiguration createGrowthConfig(PlausibilityConfiguration config) throws DocumentException, IOException {
+        incrementalRebuild = null;
+        filterProfile = profileFilters ? new NZSHM22_FilterProfile() : null;
+        progress.start(subSections.size());
+        List<PlausibilityFilter> firstFilters = new ArrayList<>();
+        List<PlausibilityFilter> lastFilters = getGrowthFilters(config);
+        if (estimateSampleFraction > 0) {
+            estimateSampleSections = NZSHM22_RuptureSetEstimate.sampleSections(subSections, estimateSampleFraction,
+                    estimateSeed);
+            firstFilters.add(NZSHM22_RuptureSetEstimate.createStartSectionFilter(estimateSampleSections));
+            estimateBaselineHeap = usedHeap();
+        } else if (previousRuptureSetFile != null) {
+            FaultSystemRupSet previousRupSet = FaultSystemIO.loadRupSet(previousRuptureSetFile);
+            incrementalRebuild = new NZSHM22_IncrementalRebuild(previousRupSet, subSections);
+            incrementalRebuild.addGrowthFilters(config, firstFilters, lastFilters);
+        }
+        List<PlausibilityFilter> filters = new ArrayList<>(firstFilters);
+        filters.addAll(config.getFilters());
+        filters.addAll(lastFilters);
+        if (filterProfile != null) {
+            filters = filterProfile.wrap(filters);
+        }
+        filters = progress.wrap(filters);
+        return new PlausibilityConfiguration(filters, config.getMaxNumSplays(), config.getConnectionStrategy(),
+                config.getDistAzCalc());
+    }
+
+    /**
+     * Adds the unchanged ruptures of the previous rupture set to the grown ruptures of an
+     * incremental build.
+     *
+     * @param config the configuration of the rupture set
+     */
+    protected void addUnchangedRuptures(PlausibilityConfiguration config) {
+        if (incrementalRebuild != null && !progress.isCancelled()) {
+            stageTimer.start("keep unchanged ruptures");
+            List<ClusterRupture> allRuptures = incrementalRebuild.getUnchangedRuptures(config);
+            System.out.println("Incremental rebuild: grew " + ruptures.size() + " ruptures on changed parent faults");
+            allRuptures.addAll(ruptures);
+            ruptures = allRuptures;
+            incrementalRebuild = null;
+        }
+    }
+
+    protected SectionDistanceAzimuthCalculator createDistAzCalc() throws IOException {
+        if (distAzCacheDir == null) {
+            return new SectionDistanceAzimuthCalculator(subSections);
+        }
+        if (!NZSHM22_MappedDistanceAzimuthCalculator.isSupported(subSections.size())) {
+            System.out.println("Too many subsections for a mapped distance table, calculating distances in memory");
+            return new SectionDistanceAzimuthCalculator(subSections);
+        }
+        NZSHM22_MappedDistanceAzimuthCalculator distAzCalc =
+                new NZSHM22_MappedDistanceAzimuthCalculator(subSections, distAzCacheDir);
+        if (precomputeDistAz) {
+            distAzCalc.precompute(numThreads);
+        }
+        return distAzCalc;
+    }
+
     protected void applyDeformationModel() {
         if (deformationModel != null) {
             for (FaultSection section : subSections) {
@@ -245,26 +427,150 @@ public abstract class NZSHM22_AbstractRuptureSetBuilder {
                 System.out.println("Fault model filtered to " + subSections.size() + " fault sections");
             }
 
-            FaultSectionList fsd = subSections;
-            subSections = new FaultSectionList();
             // build the subsections
-            subSections.addParents(fsd);
-            for (FaultSection parentSect : fsd) {
-                double ddw = parentSect.getOrigDownDipWidth();
-                double maxSectLength = ddw * maxSubSectionLength;
-                System.out.println("Get subSections in " + parentSect.getName());
-                // the "2" here sets a minimum number of sub sections
-                List<? extends FaultSection> newSubSects = parentSect.getSubSectionsList(maxSectLength,
-                        subSections.getSafeId(), 2);
-                getSubSections().addAll(newSubSects);
-                System.out.println("Produced " + newSubSects.size() + " subSections in " + parentSect.getName());
-            }
+            subSections = NZSHM22_SubSectioning.buildSubSections(subSections, maxSubSectionLength, numThreads);
             System.out.println(subSections.size() + " Sub Sections created.");
         }
 
         applyDeformationModel();
     }
 
+    /**
+     * Resets the stage timings and the progress at the beginning of buildRuptureSet(). A
+     * cancel() before this only applies to the build that was running at the time.
+     */
+    protected void startBuild() {
+        stageTimer = new NZSHM22_BuildStageTimer();
+        progress.reset();
+    }
+
+    private NZSHM22_SlipEnabledRuptureSet cancelBuild() {
+        System.out.println("Build cancelled after " + progress);
+        ruptures = null;
+        incrementalRebuild = null;
+        stageTimer.printReport();
+        return null;
+    }
+
+    /**
+     * Assembles the rupture set from the built ruptures. This is the only place rupture
+     * properties are calculated, builders should not also call ClusterRuptureBuilder.buildClusterRupSet().
+     *
+     * @param config the configuration the ruptures were built with
+     * @return the rupture set, or null if the build was cancelled or only estimated
+     */
+    protected NZSHM22_SlipEnabledRuptureSet assembleRuptureSet(PlausibilityConfiguration config) {
+        if (filterProfile != null) {
+            filterProfile.printReport();
+        }
+        progress.finish(ruptures.size());
+        if (progress.isCancelled()) {
+            return cancelBuild();
+        }
+        if (estimateSampleSections != null) {
+            stageTimer.stop();
+            estimate = NZSHM22_RuptureSetEstimate.fromSample(subSections.size(), estimateSampleSections, ruptures);
+            estimate.extrapolateResources(stageTimer.getTimings().getOrDefault("build ruptures", 0L),
+                    estimateBaselineHeap, usedHeap() - estimateBaselineHeap, ruptures.size());
+            return null;
+        }
+        stageTimer.start("assemble rupture set");
+        // TODO: consider overloading this for Hikurangi to provide
+        // Slip{DOWNDIP}RuptureModel (or similar) see [KKS,CBC]
+        List<ClusterRupture> rupSetRuptures = ruptures;
+        if (!keepClusterRuptures) {
+            // the rupture set clears its copy as it goes, this must be the only reference to the ruptures
+            rupSetRuptures = new ArrayList<>(ruptures);
+            ruptures = null;
+        }
+        // failures propagate, so that callers can tell them from a cancelled build
+        NZSHM22_SlipEnabledRuptureSet rupSet = new NZSHM22_SlipEnabledRuptureSet(rupSetRuptures, subSections,
+                this.getScalingRelationship(), this.getSlipAlongRuptureModel(), keepClusterRuptures, numThreads);
+        rupSet.setPlausibilityConfiguration(config);
+        if (progress.isCancelled()) {
+            // cancelled while assembling
+            return cancelBuild();
+        }
+        stageTimer.printReport();
+        return rupSet;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Estimates the number of ruptures, build time and peak heap of a build with the current
+     * settings. Connections are built as for a full build, but ruptures are only grown from a
+     * random sample of start sections. See NZSHM22_RuptureSetEstimate.
+     *
+     * @param sampleFraction the fraction of sections to grow ruptures from
+     * @param seed           the random seed for the sample
+     * @return the estimate
+     */
+    public NZSHM22_RuptureSetEstimate estimateRuptureSet(double sampleFraction, long seed) throws DocumentException, IOException {
+        Preconditions.checkArgument(sampleFraction > 0 && sampleFraction <= 1, "sampleFraction must be in (0, 1]");
+        estimate = null;
+        estimateSampleFraction = sampleFraction;
+        estimateSeed = seed;
+        try {
+            buildRuptureSet();
+        } finally {
+            estimateSampleFraction = 0;
+            estimateSampleSections = null;
+        }
+        System.out.println(estimate);
+        return estimate;
+    }
+
+    /**
+     * The progress of the current or last build. Can be polled from another thread while
+     * buildRuptureSet() runs.
+     *
+     * @return the build progress
+     */
+    public NZSHM22_BuildProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Stops the current build as soon as possible. Worker threads stop growing ruptures at their
+     * next candidate, the ruptures built so far are released, and buildRuptureSet() returns
+     * null. This also works during fault loading and rupture set assembly. A cancel() between
+     * builds has no effect on the next build.
+     */
+    public void cancel() {
+        progress.cancel();
+    }
+
+    /**
+     * @return the filter profile of the last build, or null if filters were not profiled
+     */
+    public NZSHM22_FilterProfile getFilterProfile() {
+        return filterProfile;
+    }
+
+    /**
+     * Writes the filter profile of the last build next to the rupture set file, if filters were
+     * profiled.
+     *
+     * @param rupSetFile the rupture set file
+     */
+    public void writeFilterProfile(File rupSetFile) throws IOException {
+        if (filterProfile != null) {
+            filterProfile.writeCsv(NZSHM22_FilterProfile.getProfileFile(rupSetFile));
+        }
+    }
+
+    /**
+     * @return the milliseconds spent in each stage of the last build
+     */
+    public Map<String, Long> getStageTimings() {
+        return stageTimer.getTimings();
+    }
+
     /**
      * @return the ruptures
      */
@@ -1,12 +1,14 @@
 package nz.cri.gns.NZSHM22.opensha.ruptures;
 
 import java.io.*;
+import java.util.List;
 import java.util.Set;
 
 import nz.cri.gns.NZSHM22.opensha.enumTreeBranches.NZSHM22_FaultModels;
 import org.dom4j.DocumentException;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRuptureBuilder;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityConfiguration;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.impl.JumpAzimuthChangeFilter;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.impl.MinSectsPerParentFilter;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.impl.TotalAzimuthChangeFilter;
@@ -251,8 +253,21 @@ public class NZSHM22_AzimuthalRuptureSetBuilder extends NZSHM22_AbstractRuptureS
 		return permutationStrategy;
 	}
 
-	private void buildConfig() {
-		SectionDistanceAzimuthCalculator distAzCalc = new SectionDistanceAzimuthCalculator(subSections);
+	/**
+	 * Thins ruptures while they are grown, see RuptureThinning.asFilter()
+	 */
+	@Override
+	protected List<PlausibilityFilter> getGrowthFilters(PlausibilityConfiguration config) {
+		List<PlausibilityFilter> filters = super.getGrowthFilters(config);
+		if (thinningFactor > 0) {
+			filters.add(RuptureThinning.asFilter("RuptureThinning",
+					RuptureThinning.thinningPredicate(thinningFactor, config.getConnectionStrategy())));
+		}
+		return filters;
+	}
+
+	private void buildConfig() throws IOException {
+		SectionDistanceAzimuthCalculator distAzCalc = createDistAzCalc();
 		JumpAzimuthChangeFilter.AzimuthCalc azimuthCalc = new JumpAzimuthChangeFilter.SimpleAzimuthCalc(distAzCalc);
 
 		// connection strategy: parent faults connect at closest point, and only when
@@ -289,13 +304,16 @@ public class NZSHM22_AzimuthalRuptureSetBuilder extends NZSHM22_AbstractRuptureS
 	@Override
 	public NZSHM22_SlipEnabledRuptureSet buildRuptureSet() throws DocumentException, IOException {
 
+		startBuild();
+		stageTimer.start("load faults");
 	    loadFaults();
 
+		stageTimer.start("plausibility config");
 		buildConfig();
 		System.out.println("Built PlausibilityConfiguration");
 
 		// Builder can now proceed using the clusters and all the filters...
-		builder = new ClusterRuptureBuilder(getPlausibilityConfig());
+		builder = new ClusterRuptureBuilder(createGrowthConfig(getPlausibilityConfig()));
 		System.out.println("initialised ClusterRuptureBuilder");
 
 		// CBC debugging...
@@ -311,30 +329,18 @@ public class NZSHM22_AzimuthalRuptureSetBuilder extends NZSHM22_AbstractRuptureS
 		
 		// debugging
 		// numThreads = 1;
+		stageTimer.start("build ruptures");
 		ruptures = getBuilder().build(permutationStrategy, numThreads);
 
 		if (thinningFactor <= 0) {
 			System.out.println("Built " + ruptures.size() + " total ruptures");
 		} else {
-			ruptures = RuptureThinning.filterRuptures(ruptures,
-					RuptureThinning.downDipPredicate().or(RuptureThinning
-							.coarsenessPredicate(thinningFactor)
-							.or(RuptureThinning.endToEndPredicate(getPlausibilityConfig().getConnectionStrategy()))));
 			System.out.println("Built " + ruptures.size() + " total ruptures after thinning");
 		}
 
-		// TODO: consider overloading this for Hikurangi to provide
-		// Slip{DOWNDIP}RuptureModel (or similar) see [KKS,CBC]
-		NZSHM22_SlipEnabledRuptureSet rupSet = null;
-		try {
-			rupSet = new NZSHM22_SlipEnabledRuptureSet(ruptures, subSections,
-					this.getScalingRelationship(), this.getSlipAlongRuptureModel());
-			rupSet.setPlausibilityConfiguration(getPlausibilityConfig());
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return rupSet;
+		addUnchangedRuptures(getPlausibilityConfig());
+
+		return assembleRuptureSet(getPlausibilityConfig());
 	}
 
 
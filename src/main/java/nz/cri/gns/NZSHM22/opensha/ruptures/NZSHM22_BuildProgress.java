@@ -0,0 +1,253 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.gson.TypeAdapter;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the progress of growing ruptures, and lets another thread cancel the growth.
+ *
+ * ClusterRuptureBuilder has no progress callbacks, so progress is observed through the growth
+ * filters: a filter in front of all others sees every candidate rupture and its start section,
+ * and a filter behind all others sees the candidates that passed. Once cancelled, the front
+ * filter stops every candidate, so that the worker threads run through the remaining start
+ * sections without growing any ruptures.
+ *
+ * Candidates that only pass a directional filter in reverse are not counted as accepted, so the
+ * accepted count can be slightly low while growing.
+ */
+public class NZSHM22_BuildProgress {
+
+    private final Set<Integer> startedSections = ConcurrentHashMap.newKeySet();
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final ThreadLocal<Candidate> currentCandidate = ThreadLocal.withInitial(Candidate::new);
+    private volatile boolean cancelled = false;
+    private volatile int numStartSections = 0;
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+
+    private static class Candidate {
+        ClusterRupture rupture;
+        boolean failed;
+    }
+
+    /**
+     * Resets the progress and the cancel flag at the beginning of a new build.
+     */
+    void reset() {
+        cancelled = false;
+        start(0);
+        startNanos = 0;
+    }
+
+    /**
+     * Resets the counts when rupture growth starts. A cancel() during the earlier stages of the
+     * build still applies.
+     *
+     * @param numStartSections the number of sections that ruptures are grown from
+     */
+    void start(int numStartSections) {
+        startedSections.clear();
+        candidates.reset();
+        accepted.reset();
+        this.numStartSections = numStartSections;
+        startNanos = System.nanoTime();
+        endNanos = 0;
+    }
+
+    /**
+     * Ends the build.
+     *
+     * @param numRuptures the number of ruptures that were built
+     */
+    void finish(int numRuptures) {
+        endNanos = System.nanoTime();
+        accepted.reset();
+        accepted.add(numRuptures);
+    }
+
+    /**
+     * Asks the build to stop. Worker threads stop growing ruptures at their next candidate, and
+     * the build returns null instead of a rupture set. The flag stays set until the next build
+     * starts.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Adds the progress filters around the growth filters.
+     *
+     * @param filters the growth filters
+     * @return the filters with progress tracking
+     */
+    List<PlausibilityFilter> wrap(List<PlausibilityFilter> filters) {
+        List<PlausibilityFilter> wrapped = new ArrayList<>();
+        wrapped.add(new ProgressFilter("BuildProgressStart", "Build Progress Start") {
+            @Override
+            public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
+                if (cancelled) {
+                    return PlausibilityResult.FAIL_HARD_STOP;
+                }
+                int startSection = rupture.clusters[0].startSect.getSectionId();
+                if (!startedSections.contains(startSection)) {
+                    startedSections.add(startSection);
+                }
+                candidates.increment();
+                Candidate candidate = currentCandidate.get();
+                candidate.rupture = rupture;
+                candidate.failed = false;
+                return PlausibilityResult.PASS;
+            }
+        });
+        for (PlausibilityFilter filter : filters) {
+            wrapped.add(new ResultFilter(filter));
+        }
+        wrapped.add(new ProgressFilter("BuildProgressEnd", "Build Progress End") {
+            @Override
+            public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
+                Candidate candidate = currentCandidate.get();
+                if (candidate.rupture == rupture && !candidate.failed) {
+                    accepted.increment();
+                }
+                candidate.rupture = null;
+                return PlausibilityResult.PASS;
+            }
+        });
+        return wrapped;
+    }
+
+    /**
+     * @return the number of start sections that ruptures have been grown from so far
+     */
+    public int getStartSectionsProcessed() {
+        return startedSections.size();
+    }
+
+    public int getNumStartSections() {
+        return numStartSections;
+    }
+
+    /**
+     * @return the number of candidate ruptures that have been tested
+     */
+    public long getCandidates() {
+        return candidates.sum();
+    }
+
+    /**
+     * @return the number of ruptures that passed all filters so far
+     */
+    public long getRupturesAccepted() {
+        return accepted.sum();
+    }
+
+    public long getElapsedMillis() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    /**
+     * Extrapolates the remaining time from the start sections processed so far. Start sections
+     * differ a lot in how many ruptures grow from them, so this is only a rough guide.
+     *
+     * @return the estimated remaining milliseconds, or -1 if no start section has been processed
+     */
+    public long getEstimatedRemainingMillis() {
+        if (endNanos != 0) {
+            return 0;
+        }
+        int processed = getStartSectionsProcessed();
+        if (processed == 0) {
+            return -1;
+        }
+        return Math.max(0, Math.round(getElapsedMillis() * (double) (numStartSections - processed) / processed));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d start sections, %d ruptures accepted of %d candidates, "
+                        + "%.1f min elapsed, %.1f min remaining%s",
+                getStartSectionsProcessed(), numStartSections, getRupturesAccepted(), getCandidates(),
+                getElapsedMillis() / 60000d, getEstimatedRemainingMillis() / 60000d, cancelled ? ", cancelled" : "");
+    }
+
+    private abstract static class ProgressFilter implements PlausibilityFilter {
+        private final String shortName;
+        private final String name;
+
+        ProgressFilter(String shortName, String name) {
+            this.shortName = shortName;
+            this.name = name;
+        }
+
+        @Override
+        public String getShortName() {
+            return shortName;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Records whether the current candidate failed the wrapped filter.
+     */
+    private class ResultFilter implements PlausibilityFilter {
+        private final PlausibilityFilter filter;
+
+        ResultFilter(PlausibilityFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
+            PlausibilityResult result = filter.apply(rupture, verbose);
+            if (result != PlausibilityResult.PASS) {
+                Candidate candidate = currentCandidate.get();
+                if (candidate.rupture == rupture) {
+                    candidate.failed = true;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String getShortName() {
+            return filter.getShortName();
+        }
+
+        @Override
+        public String getName() {
+            return filter.getName();
+        }
+
+        @Override
+        public boolean isDirectional(boolean splayed) {
+            return filter.isDirectional(splayed);
+        }
+
+        @Override
+        public TypeAdapter<PlausibilityFilter> getTypeAdapter() {
+            return filter.getTypeAdapter();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.base.Stopwatch;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the consecutive stages of a rupture set build. Starting a stage ends the previous one.
+ */
+public class NZSHM22_BuildStageTimer {
+
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+    private final Stopwatch total = Stopwatch.createUnstarted();
+    private Stopwatch stageWatch;
+    private String stage;
+
+    /**
+     * Ends the current stage and starts a new one.
+     *
+     * @param stage the name of the new stage
+     */
+    public void start(String stage) {
+        stop();
+        if (!total.isRunning()) {
+            total.start();
+        }
+        this.stage = stage;
+        stageWatch = Stopwatch.createStarted();
+    }
+
+    /**
+     * Ends the current stage.
+     */
+    public void stop() {
+        if (stage != null) {
+            timings.merge(stage, stageWatch.elapsed(TimeUnit.MILLISECONDS), Long::sum);
+            stage = null;
+        }
+    }
+
+    /**
+     * @return the milliseconds spent in each finished stage, in the order the stages ran
+     */
+    public Map<String, Long> getTimings() {
+        return Collections.unmodifiableMap(timings);
+    }
+
+    /**
+     * Ends the current stage and prints how long each stage took.
+     */
+    public void printReport() {
+        stop();
+        long totalMillis = total.elapsed(TimeUnit.MILLISECONDS);
+        System.out.println("Build stage timings:");
+        for (Map.Entry<String, Long> entry : timings.entrySet()) {
+            double percent = totalMillis == 0 ? 0 : 100d * entry.getValue() / totalMillis;
+            System.out.println(String.format("  %-24s %10.2f s %5.1f%%", entry.getKey(), entry.getValue() / 1000d,
+                    percent));
+        }
+        System.out.println(String.format("  %-24s %10.2f s", "total", totalMillis / 1000d));
+    }
+}
@@ -38,7 +38,6 @@ import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.Exhaustiv
 
 import com.google.common.base.Stopwatch;
 
-import scratch.UCERF3.FaultSystemRupSet;
 import scratch.UCERF3.enumTreeBranches.ScalingRelationships;
 import scratch.UCERF3.utils.FaultSystemIO;
 
@@ -83,6 +82,13 @@ public class NZSHM22_CoulombRuptureSetBuilder extends NZSHM22_AbstractRuptureSet
 
     protected double stiffGridSpacing = 2d;
     protected double coeffOfFriction = 0.5;
+    protected File stiffnessCacheDir = null;
+
+    private static final double LAME_LAMBDA = 3e4;
+    private static final double LAME_MU = 3e4;
+    private static final SubSectStiffnessCalculator.PatchAlignment PATCH_ALIGNMENT =
+            SubSectStiffnessCalculator.PatchAlignment.FILL_OVERLAP;
+    private static final double SELF_STIFFNESS_CAP = 1d;
 
 
     private static DecimalFormat oneDigitDF = new DecimalFormat("0.0");
@@ -107,6 +113,18 @@ public class NZSHM22_CoulombRuptureSetBuilder extends NZSHM22_AbstractRuptureSet
         return this;
     }
 
+    /**
+     * Sets a directory to keep stiffness results in. Builds with the same subsections and stiffness
+     * parameters load the results of earlier builds from there. Default is null, which does not cache.
+     *
+     * @param stiffnessCacheDir the cache directory
+     * @return this builder
+     */
+    public NZSHM22_CoulombRuptureSetBuilder setStiffnessCacheDir(File stiffnessCacheDir) {
+        this.stiffnessCacheDir = stiffnessCacheDir;
+        return this;
+    }
+
     @Override
     public String getDescriptiveName() {
         String description = "RupSet_Cl";
@@ -136,12 +154,13 @@ public class NZSHM22_CoulombRuptureSetBuilder extends NZSHM22_AbstractRuptureSet
     @Override
     public NZSHM22_SlipEnabledRuptureSet buildRuptureSet() throws DocumentException, IOException {
 
+        startBuild();
+        stageTimer.start("load faults");
         loadFaults();
 
         Preconditions.checkState(!subSections.isEmpty());
         String fmPrefix = "nz_demo_crustal";
         // File distAzCacheFile = new File(rupSetsDir, fmPrefix+"_dist_az_cache.csv");
-        ScalingRelationships scale = ScalingRelationships.MEAN_UCERF3;
         // END NZ
 
         // NSHM23 tests
@@ -195,7 +214,8 @@ public class NZSHM22_CoulombRuptureSetBuilder extends NZSHM22_AbstractRuptureSet
 //		RupDebugCriteria debugCriteria = new ParentSectsRupDebugCriteria(false, false, 219, 220, 184, 108, 240);
 //		boolean stopAfterDebug = false;
 
-        SectionDistanceAzimuthCalculator distAzCalc = new SectionDistanceAzimuthCalculator(subSections);
+        stageTimer.start("plausibility config");
+        SectionDistanceAzimuthCalculator distAzCalc = createDistAzCalc();
 
 //        if (distAzCacheFile.exists()) {
 //            System.out.println("Loading dist/az cache from "+distAzCacheFile.getAbsolutePath());
@@ -308,12 +328,15 @@ public class NZSHM22_CoulombRuptureSetBuilder extends NZSHM22_AbstractRuptureSet
 
         //TODO should we leave the constants?
         SubSectStiffnessCalculator stiffnessCalc = new SubSectStiffnessCalculator(
-                subSections, stiffGridSpacing, 3e4, 3e4, coeffOfFriction, SubSectStiffnessCalculator.PatchAlignment.FILL_OVERLAP, 1d);
+                subSections, stiffGridSpacing, LAME_LAMBDA, LAME_MU, coeffOfFriction, PATCH_ALIGNMENT, SELF_STIFFNESS_CAP);
         AggregatedStiffnessCache stiffnessCache = stiffnessCalc.getAggregationCache(SubSectStiffnessCalculator.StiffnessType.CFF);
-//        File stiffnessCacheFile = new File(rupSetsDir, stiffnessCache.getCacheFileName());
-//        int stiffnessCacheSize = 0;
-//        if (stiffnessCacheFile.exists())
-//            stiffnessCacheSize = stiffnessCache.loadCacheFile(stiffnessCacheFile);
+        NZSHM22_StiffnessCache persistentStiffnessCache = null;
+        if (stiffnessCacheDir != null) {
+            persistentStiffnessCache = new NZSHM22_StiffnessCache(stiffnessCacheDir, subSections, stiffGridSpacing,
+                    LAME_LAMBDA, LAME_MU, coeffOfFriction, PATCH_ALIGNMENT, SELF_STIFFNESS_CAP,
+                    SubSectStiffnessCalculator.StiffnessType.CFF);
+            persistentStiffnessCache.load(stiffnessCache);
+        }
         // common aggregators
         // TODO which ones are important?
         AggregatedStiffnessCalculator sumAgg = new AggregatedStiffnessCalculator(SubSectStiffnessCalculator.StiffnessType.CFF, stiffnessCalc, true,
@@ -550,7 +573,8 @@ public class NZSHM22_CoulombRuptureSetBuilder extends NZSHM22_AbstractRuptureSet
 //            numDistCached = distAzCalc.getNumCachedDistances();
 //        }
 
-        ClusterRuptureBuilder builder = new ClusterRuptureBuilder(config);
+        stageTimer.start("build ruptures");
+        ClusterRuptureBuilder builder = new ClusterRuptureBuilder(createGrowthConfig(config));
 
         if (debugCriteria != null)
             builder.setDebugCriteria(debugCriteria, stopAfterDebug);
@@ -565,22 +589,14 @@ public class NZSHM22_CoulombRuptureSetBuilder extends NZSHM22_AbstractRuptureSet
         System.out.println("Built " + countDF.format(ruptures.size()) + " ruptures in " + timeDF.format(secs)
                 + " secs = " + timeDF.format(mins) + " mins. Total rate: " + rupRate(ruptures.size(), millis));
 
+        addUnchangedRuptures(config);
 
-        FaultSystemRupSet origRupSet = ClusterRuptureBuilder.buildClusterRupSet(scale, subSections, config, ruptures);
-
-        // TODO: consider overloading this for Hikurangi to provide
-        // Slip{DOWNDIP}RuptureModel (or similar) see [KKS,CBC]
-        NZSHM22_SlipEnabledRuptureSet rupSet = null;
-        try {
-			rupSet = new NZSHM22_SlipEnabledRuptureSet(ruptures, subSections,
-					this.getScalingRelationship(), this.getSlipAlongRuptureModel());
-            rupSet.setPlausibilityConfiguration(config);
-        } catch (Exception e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+        if (persistentStiffnessCache != null) {
+            stageTimer.start("save stiffness cache");
+            persistentStiffnessCache.save(stiffnessCache);
         }
 
-        return rupSet;
+        return assembleRuptureSet(config);
 
 
 //        if (numAzCached < distAzCalc.getNumCachedAzimuths()
@@ -0,0 +1,165 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.gson.TypeAdapter;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Profiles the plausibility filters of a rupture set build. Each filter is wrapped so that its
+ * calls, time and results are counted across all build threads.
+ *
+ * Filters are applied in order and a rupture is not passed on to later filters once it has
+ * failed, so the counts of a filter depend on the filters in front of it.
+ */
+public class NZSHM22_FilterProfile {
+
+    private final List<ProfiledFilter> filters = new ArrayList<>();
+
+    /**
+     * @param filters the filters to profile
+     * @return the profiled filters, in the same order
+     */
+    public List<PlausibilityFilter> wrap(List<PlausibilityFilter> filters) {
+        List<PlausibilityFilter> wrapped = new ArrayList<>();
+        for (PlausibilityFilter filter : filters) {
+            ProfiledFilter profiled = new ProfiledFilter(filter);
+            this.filters.add(profiled);
+            wrapped.add(profiled);
+        }
+        return wrapped;
+    }
+
+    /**
+     * @return the profiled filters in the order they were wrapped
+     */
+    public List<ProfiledFilter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    public void printReport() {
+        System.out.println("Plausibility filter profile:");
+        System.out.println(String.format("  %-40s %12s %10s %10s %12s %12s %12s", "filter", "calls", "total s",
+                "ns/call", "pass", "fail future", "fail hard"));
+        for (ProfiledFilter filter : filters) {
+            long calls = filter.getCalls();
+            System.out.println(String.format("  %-40s %12d %10.2f %10d %12d %12d %12d", filter.getShortName(), calls,
+                    filter.getNanos() / 1e9, calls == 0 ? 0 : filter.getNanos() / calls, filter.getPassed(),
+                    filter.getFailedFuturePossible(), filter.getFailedHardStop()));
+        }
+    }
+
+    /**
+     * Writes the profile as a CSV file.
+     *
+     * @param file the file
+     */
+    public void writeCsv(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("filter,name,calls,totalNanos,pass,failFuturePossible,failHardStop");
+            for (ProfiledFilter filter : filters) {
+                out.println(filter.getShortName() + ",\"" + filter.getName().replace("\"", "\"\"") + "\","
+                        + filter.getCalls() + "," + filter.getNanos() + "," + filter.getPassed() + ","
+                        + filter.getFailedFuturePossible() + "," + filter.getFailedHardStop());
+            }
+        }
+    }
+
+    /**
+     * @param rupSetFile a rupture set file
+     * @return the profile file that goes next to the rupture set file
+     */
+    public static File getProfileFile(File rupSetFile) {
+        String name = rupSetFile.getName();
+        if (name.endsWith(".zip")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        return new File(rupSetFile.getAbsoluteFile().getParentFile(), name + "_filter_profile.csv");
+    }
+
+    /**
+     * A filter that counts the calls, time and results of another filter.
+     */
+    public static class ProfiledFilter implements PlausibilityFilter {
+
+        private final PlausibilityFilter filter;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder passed = new LongAdder();
+        private final LongAdder failedFuturePossible = new LongAdder();
+        private final LongAdder failedHardStop = new LongAdder();
+
+        public ProfiledFilter(PlausibilityFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
+            long start = System.nanoTime();
+            PlausibilityResult result = filter.apply(rupture, verbose);
+            nanos.add(System.nanoTime() - start);
+            calls.increment();
+            if (result == PlausibilityResult.PASS) {
+                passed.increment();
+            } else if (result == PlausibilityResult.FAIL_FUTURE_POSSIBLE) {
+                failedFuturePossible.increment();
+            } else {
+                failedHardStop.increment();
+            }
+            return result;
+        }
+
+        @Override
+        public String getShortName() {
+            return filter.getShortName();
+        }
+
+        @Override
+        public String getName() {
+            return filter.getName();
+        }
+
+        @Override
+        public boolean isDirectional(boolean splayed) {
+            return filter.isDirectional(splayed);
+        }
+
+        @Override
+        public TypeAdapter<PlausibilityFilter> getTypeAdapter() {
+            return filter.getTypeAdapter();
+        }
+
+        public PlausibilityFilter getFilter() {
+            return filter;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        public long getPassed() {
+            return passed.sum();
+        }
+
+        public long getFailedFuturePossible() {
+            return failedFuturePossible.sum();
+        }
+
+        public long getFailedHardStop() {
+            return failedHardStop.sum();
+        }
+    }
+}
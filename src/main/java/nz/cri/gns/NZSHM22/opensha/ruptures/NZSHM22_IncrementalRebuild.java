@@ -0,0 +1,293 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import nz.cri.gns.NZSHM22.opensha.util.ContentHash;
+import org.opensha.commons.geo.Location;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.Jump;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityConfiguration;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.ClusterConnectionStrategy;
+import org.opensha.sha.faultSurface.FaultSection;
+import scratch.UCERF3.FaultSystemRupSet;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
+
+import java.util.*;
+
+/**
+ * Rebuilds a rupture set after a fault model revision by reusing the ruptures of the previous
+ * rupture set that only involve unchanged parent faults.
+ *
+ * Parents are compared by a hash of the geometry and properties of their subsections. Ruptures
+ * are grown from every subsection, but a rupture that does not touch a changed parent yet is only
+ * grown further while a changed parent can still be reached from its last parent without going
+ * through one of its other parents. Only ruptures that touch a changed parent are kept from the
+ * growth. This assumes that the connection between two parents only depends on those two
+ * parents, which holds for the connection strategies used by the NZSHM22 builders, and that a
+ * rupture never returns to a parent it already contains.
+ *
+ * The start sections are not restricted, so the rebuild still tests every start section of the
+ * connected components of the changed parents. It saves the growth of ruptures away from the
+ * changed parents, which is most of the work when the changes are local.
+ */
+public class NZSHM22_IncrementalRebuild {
+
+    private final FaultSystemRupSet previousRupSet;
+    private final List<? extends FaultSection> subSections;
+    private final Set<Integer> changedParents;
+    private Set<Integer> affectedParents;
+
+    /**
+     * @param previousRupSet the rupture set built from the previous fault model
+     * @param subSections    the subsections of the new fault model
+     */
+    public NZSHM22_IncrementalRebuild(FaultSystemRupSet previousRupSet, List<? extends FaultSection> subSections) {
+        this.previousRupSet = previousRupSet;
+        this.subSections = subSections;
+        this.changedParents = getChangedParents(previousRupSet.getFaultSectionDataList(), subSections);
+        System.out.println("Incremental rebuild: " + changedParents.size() + " changed parent faults");
+    }
+
+    protected static Map<Integer, List<FaultSection>> groupByParent(List<? extends FaultSection> subSections) {
+        Map<Integer, List<FaultSection>> parents = new HashMap<>();
+        for (FaultSection section : subSections) {
+            parents.computeIfAbsent(section.getParentSectionId(), id -> new ArrayList<>()).add(section);
+        }
+        return parents;
+    }
+
+    protected static String hashParent(List<FaultSection> parentSubSections) {
+        ContentHash hash = new ContentHash();
+        hash.add(parentSubSections.size());
+        for (FaultSection section : parentSubSections) {
+            // section ids are not hashed, they shift when an earlier parent changes its number of subsections
+            hash.add(section.getFaultTrace().size());
+            for (Location location : section.getFaultTrace()) {
+                hash.add(location.getLatitude());
+                hash.add(location.getLongitude());
+                hash.add(location.getDepth());
+            }
+            hash.add(section.getAveDip());
+            hash.add(section.getDipDirection());
+            hash.add(section.getOrigAveUpperDepth());
+            hash.add(section.getAveLowerDepth());
+            hash.add(section.getAveRake());
+            hash.add(section.getAseismicSlipFactor());
+            hash.add(section.getCouplingCoeff());
+            // slip rates are used by some plausibility filters
+            hash.add(section.getOrigAveSlipRate());
+            hash.add(section.getOrigSlipRateStdDev());
+        }
+        return hash.toHex();
+    }
+
+    /**
+     * @return the ids of all parents that were added, removed or changed
+     */
+    public static Set<Integer> getChangedParents(List<? extends FaultSection> oldSubSections,
+                                                 List<? extends FaultSection> newSubSections) {
+        Map<Integer, List<FaultSection>> oldParents = groupByParent(oldSubSections);
+        Map<Integer, List<FaultSection>> newParents = groupByParent(newSubSections);
+        Set<Integer> changed = new HashSet<>();
+        for (Integer parentId : Sets.union(oldParents.keySet(), newParents.keySet())) {
+            List<FaultSection> oldParent = oldParents.get(parentId);
+            List<FaultSection> newParent = newParents.get(parentId);
+            if (oldParent == null || newParent == null || !hashParent(oldParent).equals(hashParent(newParent))) {
+                changed.add(parentId);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the parents in the connected components of the changed parents
+     */
+    public static Set<Integer> getAffectedParents(Set<Integer> changedParents,
+                                                  ClusterConnectionStrategy connectionStrategy) {
+        Map<Integer, FaultSubsectionCluster> clusters = new HashMap<>();
+        for (FaultSubsectionCluster cluster : connectionStrategy.getClusters()) {
+            clusters.put(cluster.parentSectionID, cluster);
+        }
+        Set<Integer> affected = new HashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (Integer parentId : changedParents) {
+            if (clusters.containsKey(parentId) && affected.add(parentId)) {
+                queue.add(parentId);
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (Jump jump : clusters.get(queue.poll()).getConnections()) {
+                if (affected.add(jump.toCluster.parentSectionID)) {
+                    queue.add(jump.toCluster.parentSectionID);
+                }
+            }
+        }
+        return affected;
+    }
+
+    public Set<Integer> getChangedParents() {
+        return changedParents;
+    }
+
+    /**
+     * @return the parents that ruptures were grown on, available after addGrowthFilters()
+     */
+    public Set<Integer> getAffectedParents() {
+        return affectedParents;
+    }
+
+    /**
+     * Adds the filters for growing the ruptures that touch changed parents. Growth stops as soon
+     * as a rupture reaches a parent outside the connected components of the changed parents, or
+     * can no longer reach a changed parent, and ruptures that only contain unchanged parents are
+     * not kept.
+     *
+     * @param config       the configuration of the full build
+     * @param firstFilters the filters to apply before the filters of the configuration
+     * @param lastFilters  the filters to apply after the filters of the configuration
+     */
+    public void addGrowthFilters(PlausibilityConfiguration config, List<PlausibilityFilter> firstFilters,
+                                 List<PlausibilityFilter> lastFilters) {
+        Preconditions.checkState(config.getMaxNumSplays() == 0, "Incremental rebuilds do not support splays");
+        affectedParents = getAffectedParents(changedParents, config.getConnectionStrategy());
+        System.out.println("Incremental rebuild: growing ruptures on " + affectedParents.size() + " affected parent faults");
+        firstFilters.add(new ChangedParentFilter(changedParents, affectedParents, config.getConnectionStrategy()));
+    }
+
+    /**
+     * Passes ruptures that touch a changed parent. Other ruptures fail, and stop growing once no
+     * changed parent can be reached from their last parent through parents that are not in the
+     * rupture yet. Ruptures that reach a parent outside the affected parents stop growing.
+     */
+    static class ChangedParentFilter implements PlausibilityFilter {
+
+        // the graph of the affected parents, by index
+        private final Map<Integer, Integer> indices = new HashMap<>();
+        private final int[][] connections;
+        private final boolean[] changed;
+        private final ThreadLocal<BitSet> visited = ThreadLocal.withInitial(BitSet::new);
+        private final ThreadLocal<int[]> queue;
+
+        ChangedParentFilter(Set<Integer> changedParents, Set<Integer> affectedParents,
+                            ClusterConnectionStrategy connectionStrategy) {
+            for (Integer parentId : affectedParents) {
+                indices.put(parentId, indices.size());
+            }
+            connections = new int[indices.size()][];
+            changed = new boolean[indices.size()];
+            for (FaultSubsectionCluster cluster : connectionStrategy.getClusters()) {
+                Integer index = indices.get(cluster.parentSectionID);
+                if (index == null) {
+                    continue;
+                }
+                changed[index] = changedParents.contains(cluster.parentSectionID);
+                Set<Integer> targets = new LinkedHashSet<>();
+                for (Jump jump : cluster.getConnections()) {
+                    Integer target = indices.get(jump.toCluster.parentSectionID);
+                    if (target != null) {
+                        targets.add(target);
+                    }
+                }
+                connections[index] = targets.stream().mapToInt(Integer::intValue).toArray();
+            }
+            for (int i = 0; i < connections.length; i++) {
+                if (connections[i] == null) {
+                    connections[i] = new int[0];
+                }
+            }
+            queue = ThreadLocal.withInitial(() -> new int[connections.length]);
+        }
+
+        @Override
+        public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
+            BitSet visited = this.visited.get();
+            visited.clear();
+            for (FaultSubsectionCluster cluster : rupture.clusters) {
+                Integer index = indices.get(cluster.parentSectionID);
+                if (index == null) {
+                    return PlausibilityResult.FAIL_HARD_STOP;
+                }
+                if (changed[index]) {
+                    return PlausibilityResult.PASS;
+                }
+                visited.set(index);
+            }
+            int last = indices.get(rupture.clusters[rupture.clusters.length - 1].parentSectionID);
+            return canReachChangedParent(last, visited)
+                    ? PlausibilityResult.FAIL_FUTURE_POSSIBLE
+                    : PlausibilityResult.FAIL_HARD_STOP;
+        }
+
+        /**
+         * Breadth first search from the last parent, skipping the visited parents.
+         */
+        private boolean canReachChangedParent(int start, BitSet visited) {
+            int[] queue = this.queue.get();
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            while (head < tail) {
+                for (int next : connections[queue[head++]]) {
+                    if (!visited.get(next)) {
+                        if (changed[next]) {
+                            return true;
+                        }
+                        visited.set(next);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String getShortName() {
+            return "ChangedParentFilter";
+        }
+
+        @Override
+        public String getName() {
+            return "Changed Parent Filter";
+        }
+    }
+
+    /**
+     * Recreates the ruptures of the previous rupture set that only contain unchanged parents on the
+     * new subsections. Subsections are matched by parent and position within the parent, since
+     * unchanged parents have the same number of subsections.
+     *
+     * @param config the configuration of the full build
+     * @return the unchanged ruptures
+     */
+    public List<ClusterRupture> getUnchangedRuptures(PlausibilityConfiguration config) {
+        Map<Integer, List<FaultSection>> newParents = groupByParent(subSections);
+        List<? extends FaultSection> oldSubSections = previousRupSet.getFaultSectionDataList();
+        int[] ordinals = new int[oldSubSections.size()];
+        Map<Integer, Integer> parentCounts = new HashMap<>();
+        for (int s = 0; s < ordinals.length; s++) {
+            ordinals[s] = parentCounts.merge(oldSubSections.get(s).getParentSectionId(), 1, Integer::sum) - 1;
+        }
+
+        List<ClusterRupture> unchanged = new ArrayList<>();
+        for (int r = 0; r < previousRupSet.getNumRuptures(); r++) {
+            List<Integer> oldSections = previousRupSet.getSectionsIndicesForRup(r);
+            List<FaultSection> sections = new ArrayList<>(oldSections.size());
+            for (int s : oldSections) {
+                int parentId = oldSubSections.get(s).getParentSectionId();
+                if (changedParents.contains(parentId)) {
+                    sections = null;
+                    break;
+                }
+                sections.add(newParents.get(parentId).get(ordinals[s]));
+            }
+            if (sections != null) {
+                unchanged.add(ClusterRupture.forOrderedSingleStrandRupture(sections, config.getDistAzCalc()));
+            }
+        }
+        System.out.println("Incremental rebuild: kept " + unchanged.size() + " of " + previousRupSet.getNumRuptures()
+                + " previous ruptures");
+        return unchanged;
+    }
+}
@@ -0,0 +1,243 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import nz.cri.gns.NZSHM22.opensha.util.ContentHash;
+import org.opensha.commons.geo.Location;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.util.SectionDistanceAzimuthCalculator;
+import org.opensha.sha.faultSurface.FaultSection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A SectionDistanceAzimuthCalculator that keeps all distances and azimuths in a memory mapped
+ * file, so that they are shared between builds and processes that use the same subsections.
+ *
+ * The file holds a full table of distances and one of azimuths, indexed by the position of the
+ * sections in the subsection list, with NaN for pairs that have not been calculated yet. Values
+ * are stored as doubles, so that builds with and without the table see exactly the same values. Pairs
+ * are calculated on first use and written straight into the mapped file, or all at once with
+ * precompute(). The file name is a hash of the subsection geometry, which covers the fault model
+ * and the subsection length.
+ */
+public class NZSHM22_MappedDistanceAzimuthCalculator extends SectionDistanceAzimuthCalculator {
+
+    private static final int MAGIC = 0x4e5a4441; // "NZDA"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+
+    private final List<? extends FaultSection> subSections;
+    private final int numSections;
+    private final int[] idToIndex;
+    private final File cacheFile;
+    private final MappedByteBuffer distances;
+    private final MappedByteBuffer azimuths;
+
+    /**
+     * @param subSections the subsections
+     * @param cacheDir    the directory to keep the table files in
+     * @throws IOException
+     */
+    public NZSHM22_MappedDistanceAzimuthCalculator(List<? extends FaultSection> subSections, File cacheDir)
+            throws IOException {
+        super(subSections);
+        this.subSections = subSections;
+        numSections = subSections.size();
+        Preconditions.checkArgument(isSupported(numSections),
+                "Too many subsections for a mapped distance table: %s", numSections);
+
+        int maxId = 0;
+        for (FaultSection section : subSections) {
+            maxId = Math.max(maxId, section.getSectionId());
+        }
+        idToIndex = new int[maxId + 1];
+        Arrays.fill(idToIndex, -1);
+        for (int i = 0; i < numSections; i++) {
+            idToIndex[subSections.get(i).getSectionId()] = i;
+        }
+
+        Preconditions.checkState(cacheDir.exists() || cacheDir.mkdirs(), "Could not create %s", cacheDir);
+        cacheFile = new File(cacheDir, "dist_az_v" + FORMAT_VERSION + "_" + getKey(subSections) + ".bin");
+        if (!cacheFile.exists()) {
+            createTableFile();
+        }
+
+        long tableBytes = (long) numSections * numSections * Double.BYTES;
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw"); FileChannel channel = raf.getChannel()) {
+            Preconditions.checkState(channel.size() == HEADER_BYTES + 2 * tableBytes,
+                    "Unexpected size of distance table %s", cacheFile);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            Preconditions.checkState(header.getInt() == MAGIC, "Not a distance table: %s", cacheFile);
+            Preconditions.checkState(header.getInt() == FORMAT_VERSION, "Unsupported distance table version: %s",
+                    cacheFile);
+            distances = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, tableBytes);
+            azimuths = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + tableBytes, tableBytes);
+        }
+    }
+
+    /**
+     * Each table is mapped as a single buffer, which limits the number of subsections.
+     *
+     * @param numSections the number of subsections
+     * @return whether a mapped table can hold all pairs of the subsections
+     */
+    public static boolean isSupported(int numSections) {
+        return (long) numSections * numSections * Double.BYTES < Integer.MAX_VALUE;
+    }
+
+    /**
+     * Builds the table key from the geometry of the subsections, which determines their distances
+     * and azimuths.
+     */
+    public static String getKey(List<? extends FaultSection> subSections) {
+        ContentHash hash = new ContentHash();
+        hash.add(subSections.size());
+        for (FaultSection section : subSections) {
+            hash.add(section.getSectionId());
+            hash.add(section.getFaultTrace().size());
+            for (Location location : section.getFaultTrace()) {
+                hash.add(location.getLatitude());
+                hash.add(location.getLongitude());
+                hash.add(location.getDepth());
+            }
+            hash.add(section.getAveDip());
+            hash.add(section.getDipDirection());
+            hash.add(section.getOrigAveUpperDepth());
+            hash.add(section.getAveLowerDepth());
+        }
+        return hash.toHex();
+    }
+
+    /**
+     * Writes an empty table to a temporary file and moves it into place, so that other processes
+     * never map a partially written file. If another process created the table in the meantime,
+     * its table is kept, as it may already be mapped and hold calculated values.
+     */
+    private void createTableFile() throws IOException {
+        long tableBytes = (long) numSections * numSections * Double.BYTES;
+        File tmpFile = File.createTempFile("dist_az_", ".tmp", cacheFile.getParentFile());
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                raf.setLength(HEADER_BYTES + 2 * tableBytes);
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                header.putInt(MAGIC);
+                header.putInt(FORMAT_VERSION);
+                header.putInt(numSections);
+                fillNaN(channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, tableBytes));
+                fillNaN(channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + tableBytes, tableBytes));
+            }
+            try {
+                // unlike a rename, a link never replaces an existing file
+                Files.createLink(cacheFile.toPath(), tmpFile.toPath());
+            } catch (FileAlreadyExistsException e) {
+                System.out.println("Using distance table " + cacheFile + " created by another process");
+                return;
+            } catch (UnsupportedOperationException | IOException e) {
+                // no hard links on this file system
+                try {
+                    Files.move(tmpFile.toPath(), cacheFile.toPath());
+                } catch (FileAlreadyExistsException e2) {
+                    System.out.println("Using distance table " + cacheFile + " created by another process");
+                    return;
+                }
+            }
+            System.out.println("Created distance table " + cacheFile);
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+    private static void fillNaN(MappedByteBuffer buffer) {
+        while (buffer.remaining() >= Double.BYTES) {
+            buffer.putDouble(Double.NaN);
+        }
+        buffer.force();
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    private int tableIndex(int id1, int id2) {
+        return (idToIndex[id1] * numSections + idToIndex[id2]) * Double.BYTES;
+    }
+
+    @Override
+    public double getDistance(FaultSection sect1, FaultSection sect2) {
+        return getDistance(sect1.getSectionId(), sect2.getSectionId());
+    }
+
+    @Override
+    public double getDistance(int id1, int id2) {
+        int index = tableIndex(id1, id2);
+        double distance = distances.getDouble(index);
+        if (Double.isNaN(distance)) {
+            distance = super.getDistance(id1, id2);
+            distances.putDouble(index, distance);
+            distances.putDouble(tableIndex(id2, id1), distance);
+        }
+        return distance;
+    }
+
+    @Override
+    public double getAzimuth(FaultSection sect1, FaultSection sect2) {
+        return getAzimuth(sect1.getSectionId(), sect2.getSectionId());
+    }
+
+    @Override
+    public double getAzimuth(int id1, int id2) {
+        int index = tableIndex(id1, id2);
+        double azimuth = azimuths.getDouble(index);
+        if (Double.isNaN(azimuth)) {
+            azimuth = super.getAzimuth(id1, id2);
+            azimuths.putDouble(index, azimuth);
+        }
+        return azimuth;
+    }
+
+    /**
+     * Calculates all pairs that are not in the table yet.
+     *
+     * @param numThreads the number of threads to use
+     */
+    public void precompute(int numThreads) {
+        Stopwatch watch = Stopwatch.createStarted();
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            pool.submit(() -> IntStream.range(0, numSections).parallel().forEach(i -> {
+                int id1 = subSections.get(i).getSectionId();
+                for (int j = 0; j < numSections; j++) {
+                    int id2 = subSections.get(j).getSectionId();
+                    if (j > i) {
+                        getDistance(id1, id2);
+                    }
+                    getAzimuth(id1, id2);
+                }
+            })).join();
+        } finally {
+            pool.shutdown();
+        }
+        force();
+        System.out.println("Precomputed distance table " + cacheFile + " in " + watch);
+    }
+
+    /**
+     * Writes the values calculated so far to disk. Values are also written when the mapping is
+     * released, this makes sure they are on disk at a known point.
+     */
+    public void force() {
+        distances.force();
+        azimuths.force();
+    }
+}
@@ -0,0 +1,125 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact storage of the section indices of all ruptures. All indices are kept in one flat int
+ * array, with an offsets array pointing at the first index of each rupture. The store is a
+ * List&lt;List&lt;Integer&gt;&gt;, so that it can be passed to FaultSystemRupSet.init() in place of
+ * nested ArrayLists. Each rupture's list is a read-only view on the flat array, which only boxes
+ * indices when they are read.
+ */
+public class NZSHM22_RuptureSectionStore extends AbstractList<List<Integer>> implements RandomAccess {
+
+    private final int[] sections;
+    private final int[] offsets;
+
+    private NZSHM22_RuptureSectionStore(int[] sections, int[] offsets) {
+        this.sections = sections;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param rupSections the section indices of each rupture
+     * @return the store
+     */
+    public static NZSHM22_RuptureSectionStore fromArrays(int[][] rupSections) {
+        int[] offsets = new int[rupSections.length + 1];
+        for (int r = 0; r < rupSections.length; r++) {
+            offsets[r + 1] = Math.addExact(offsets[r], rupSections[r].length);
+        }
+        int[] sections = new int[offsets[rupSections.length]];
+        for (int r = 0; r < rupSections.length; r++) {
+            System.arraycopy(rupSections[r], 0, sections, offsets[r], rupSections[r].length);
+        }
+        return new NZSHM22_RuptureSectionStore(sections, offsets);
+    }
+
+    @Override
+    public List<Integer> get(int rupIndex) {
+        Preconditions.checkElementIndex(rupIndex, size());
+        return new SectionList(offsets[rupIndex], offsets[rupIndex + 1]);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return the number of sections in the rupture, without creating a view
+     */
+    public int getNumSections(int rupIndex) {
+        return offsets[rupIndex + 1] - offsets[rupIndex];
+    }
+
+    /**
+     * @return a copy of the section indices of the rupture
+     */
+    public int[] getSections(int rupIndex) {
+        return Arrays.copyOfRange(sections, offsets[rupIndex], offsets[rupIndex + 1]);
+    }
+
+    /**
+     * @return the size of the index and offset arrays in bytes
+     */
+    public long getSizeInBytes() {
+        return 4L * sections.length + 4L * offsets.length;
+    }
+
+    private class SectionList extends AbstractList<Integer> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        SectionList(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer get(int index) {
+            Preconditions.checkElementIndex(index, size());
+            return sections[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Builds a store by appending ruptures one at a time.
+     */
+    public static class Builder {
+        private int[] sections = new int[1024];
+        private int[] offsets = new int[257];
+        private int numRuptures = 0;
+
+        public Builder add(List<Integer> rupSections) {
+            int start = offsets[numRuptures];
+            int end = Math.addExact(start, rupSections.size());
+            if (end > sections.length) {
+                sections = Arrays.copyOf(sections, Math.max(end, sections.length * 2));
+            }
+            for (int i = 0; i < rupSections.size(); i++) {
+                sections[start + i] = rupSections.get(i);
+            }
+            if (numRuptures + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[++numRuptures] = end;
+            return this;
+        }
+
+        public NZSHM22_RuptureSectionStore build() {
+            return new NZSHM22_RuptureSectionStore(Arrays.copyOf(sections, offsets[numRuptures]),
+                    Arrays.copyOf(offsets, numRuptures + 1));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.base.Preconditions;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import org.opensha.sha.faultSurface.FaultSection;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
+
+import java.util.*;
+
+/**
+ * Estimates the size of a rupture set from growing ruptures on a random sample of start sections.
+ *
+ * Each rupture is owned by the lower id of its two end sections. Ruptures are counted for the
+ * sampled sections that own them, and the total is extrapolated with the simple random sampling
+ * estimator N * mean(count), with a 95% confidence interval from the standard error of the mean.
+ * This assumes that every rupture is grown when the section that owns it is a start section,
+ * which holds for the exhaustive growing strategies.
+ */
+public class NZSHM22_RuptureSetEstimate {
+
+    static final double Z_95 = 1.96;
+
+    private final int numSections;
+    private final int numSampledSections;
+    private final int numSampledRuptures;
+    private final double estimatedRuptures;
+    private final double lowerRuptures;
+    private final double upperRuptures;
+    private final double meanSectionsPerRupture;
+    private long estimatedBuildMillis;
+    private double bytesPerRupture;
+    private long estimatedPeakHeapBytes;
+
+    NZSHM22_RuptureSetEstimate(int numSections, int[] ownedCounts, double meanSectionsPerRupture) {
+        Preconditions.checkArgument(ownedCounts.length > 0 && ownedCounts.length <= numSections);
+        this.numSections = numSections;
+        this.numSampledSections = ownedCounts.length;
+        this.meanSectionsPerRupture = meanSectionsPerRupture;
+
+        int k = ownedCounts.length;
+        double sum = 0;
+        for (int count : ownedCounts) {
+            sum += count;
+        }
+        double mean = sum / k;
+        double variance = 0;
+        for (int count : ownedCounts) {
+            variance += (count - mean) * (count - mean);
+        }
+        variance = k > 1 ? variance / (k - 1) : 0;
+        double finitePopulation = numSections > 1 ? (double) (numSections - k) / (numSections - 1) : 0;
+        double standardError = numSections * Math.sqrt(variance / k * finitePopulation);
+
+        this.numSampledRuptures = (int) sum;
+        this.estimatedRuptures = numSections * mean;
+        this.lowerRuptures = Math.max(sum, estimatedRuptures - Z_95 * standardError);
+        this.upperRuptures = estimatedRuptures + Z_95 * standardError;
+    }
+
+    /**
+     * Creates an estimate from the ruptures grown on the sampled start sections.
+     *
+     * @param numSections     the number of sections in the model
+     * @param sampledSections the ids of the sampled start sections
+     * @param ruptures        the ruptures grown from the sampled sections
+     * @return the estimate
+     */
+    public static NZSHM22_RuptureSetEstimate fromSample(int numSections, Set<Integer> sampledSections,
+                                                        List<ClusterRupture> ruptures) {
+        Map<Integer, Integer> sampleIndexes = new HashMap<>();
+        for (Integer id : sampledSections) {
+            sampleIndexes.put(id, sampleIndexes.size());
+        }
+        int[] ownedCounts = new int[sampledSections.size()];
+        long totalSections = 0;
+        for (ClusterRupture rupture : ruptures) {
+            List<FaultSection> sections = rupture.buildOrderedSectionList();
+            totalSections += sections.size();
+            int owner = Math.min(sections.get(0).getSectionId(), sections.get(sections.size() - 1).getSectionId());
+            Integer index = sampleIndexes.get(owner);
+            if (index != null) {
+                ownedCounts[index]++;
+            }
+        }
+        double meanSections = ruptures.isEmpty() ? 0 : (double) totalSections / ruptures.size();
+        return new NZSHM22_RuptureSetEstimate(numSections, ownedCounts, meanSections);
+    }
+
+    /**
+     * Draws a random sample of start sections.
+     *
+     * @param subSections    the sections of the model
+     * @param sampleFraction the fraction of sections to sample
+     * @param seed           the random seed
+     * @return the ids of the sampled sections
+     */
+    public static Set<Integer> sampleSections(List<? extends FaultSection> subSections, double sampleFraction,
+                                              long seed) {
+        Preconditions.checkArgument(sampleFraction > 0 && sampleFraction <= 1, "sampleFraction must be in (0, 1]");
+        List<Integer> ids = new ArrayList<>();
+        for (FaultSection section : subSections) {
+            ids.add(section.getSectionId());
+        }
+        Collections.shuffle(ids, new Random(seed));
+        int sampleSize = Math.max(1, (int) Math.round(sampleFraction * ids.size()));
+        return new HashSet<>(ids.subList(0, sampleSize));
+    }
+
+    /**
+     * A filter that only lets ruptures grow from the sampled start sections.
+     */
+    public static PlausibilityFilter createStartSectionFilter(Set<Integer> sampledSections) {
+        return new PlausibilityFilter() {
+            @Override
+            public String getShortName() {
+                return "StartSectionSample";
+            }
+
+            @Override
+            public String getName() {
+                return "Start Section Sample";
+            }
+
+            @Override
+            public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
+                return sampledSections.contains(rupture.clusters[0].startSect.getSectionId())
+                        ? PlausibilityResult.PASS
+                        : PlausibilityResult.FAIL_HARD_STOP;
+            }
+        };
+    }
+
+    /**
+     * Extrapolates build time and peak heap.
+     *
+     * @param sampleGrowthMillis the time it took to grow the sampled ruptures
+     * @param baselineHeapBytes  the heap in use before growing the ruptures
+     * @param sampleHeapBytes    the heap taken up by all ruptures of the sampled growth
+     * @param numGrownRuptures   the number of ruptures of the sampled growth, owned or not
+     */
+    void extrapolateResources(long sampleGrowthMillis, long baselineHeapBytes, long sampleHeapBytes,
+                              int numGrownRuptures) {
+        estimatedBuildMillis = Math.round(sampleGrowthMillis * (double) numSections / numSampledSections);
+        bytesPerRupture = numGrownRuptures == 0 ? 0 : Math.max(0, sampleHeapBytes) / (double) numGrownRuptures;
+        // the assembled rupture set has 5 doubles per rupture plus the compact section store
+        double rupSetBytesPerRupture = 5 * 8 + 4 * (meanSectionsPerRupture + 1);
+        estimatedPeakHeapBytes = baselineHeapBytes
+                + Math.round(upperRuptures * (bytesPerRupture + rupSetBytesPerRupture));
+    }
+
+    public int getNumSections() {
+        return numSections;
+    }
+
+    public int getNumSampledSections() {
+        return numSampledSections;
+    }
+
+    public int getNumSampledRuptures() {
+        return numSampledRuptures;
+    }
+
+    public double getEstimatedRuptures() {
+        return estimatedRuptures;
+    }
+
+    /**
+     * @return the lower bound of the 95% confidence interval of the rupture count
+     */
+    public double getLowerRuptures() {
+        return lowerRuptures;
+    }
+
+    /**
+     * @return the upper bound of the 95% confidence interval of the rupture count
+     */
+    public double getUpperRuptures() {
+        return upperRuptures;
+    }
+
+    public double getMeanSectionsPerRupture() {
+        return meanSectionsPerRupture;
+    }
+
+    public long getEstimatedBuildMillis() {
+        return estimatedBuildMillis;
+    }
+
+    public double getBytesPerRupture() {
+        return bytesPerRupture;
+    }
+
+    /**
+     * @return the estimated peak heap of the build at the upper bound of the rupture count
+     */
+    public long getEstimatedPeakHeapBytes() {
+        return estimatedPeakHeapBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Estimated %.0f ruptures (95%% CI %.0f - %.0f) from %d ruptures on %d of %d start sections, "
+                        + "build time %.1f min, peak heap %.2f GB",
+                estimatedRuptures, lowerRuptures, upperRuptures, numSampledRuptures, numSampledSections, numSections,
+                estimatedBuildMillis / 60000d, estimatedPeakHeapBytes / 1e9);
+    }
+}
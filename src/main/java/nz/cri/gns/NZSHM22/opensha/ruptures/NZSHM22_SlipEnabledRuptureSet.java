@@ -1,9 +1,8 @@
 package nz.cri.gns.NZSHM22.opensha.ruptures;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import org.opensha.commons.util.FaultUtils;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
@@ -27,6 +26,28 @@ public class NZSHM22_SlipEnabledRuptureSet extends SlipAlongRuptureModelRupSet {
 
 	public NZSHM22_SlipEnabledRuptureSet(List<ClusterRupture> ruptures, List<FaultSection> subSections,
 			ScalingRelationships scale, SlipAlongRuptureModels slipAlongModel) {
+		this(ruptures, subSections, scale, slipAlongModel, true);
+	}
+
+	public NZSHM22_SlipEnabledRuptureSet(List<ClusterRupture> ruptures, List<FaultSection> subSections,
+			ScalingRelationships scale, SlipAlongRuptureModels slipAlongModel, boolean keepClusterRuptures) {
+		this(ruptures, subSections, scale, slipAlongModel, keepClusterRuptures,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param keepClusterRuptures if false, each entry of ruptures is set to null
+	 *                            once its properties are calculated, and the rupture
+	 *                            set does not keep the ClusterRuptures. This lets
+	 *                            the ruptures be garbage collected during assembly
+	 *                            if the caller holds no other references to them.
+	 *                            ruptures must then support set().
+	 * @param numThreads          the number of threads to calculate the rupture
+	 *                            properties with
+	 */
+	public NZSHM22_SlipEnabledRuptureSet(List<ClusterRupture> ruptures, List<FaultSection> subSections,
+			ScalingRelationships scale, SlipAlongRuptureModels slipAlongModel, boolean keepClusterRuptures,
+			int numThreads) {
 		super(slipAlongModel);
 
 		// build a rupture set (doing this manually instead of creating an inversion
@@ -55,90 +76,109 @@ public class NZSHM22_SlipEnabledRuptureSet extends SlipAlongRuptureModelRupSet {
 		
 		}
 
-		double[] rupMags = new double[ruptures.size()];
-		double[] rupRakes = new double[ruptures.size()];
-		double[] rupAreas = new double[ruptures.size()];
-		double[] rupLengths = new double[ruptures.size()];
-		rupAveSlips = new double[ruptures.size()];
-		List<List<Integer>> rupsIDsList = new ArrayList<>();
-
-		/*
-		 * build a map of downdip ruptures with length
-		 */
-		Map<ClusterRupture, Double> ruptureLengths = new HashMap<>();
-		Integer currentMin; // , currentMax;
-
-		for (int r = 0; r < ruptures.size(); r++) {
-			ClusterRupture rup = ruptures.get(r);
-			currentMin = Integer.MAX_VALUE; // ruptureMinExtents.get(rup.hashCode());
-
-			List<FaultSection> rupSects = rup.buildOrderedSectionList();
-			// get min row of downdip (assumes there's just one of these)
-			for (FaultSection sect : rupSects) {
-				if (DownDipFaultSection.class.isInstance(sect)) {
-					if (((DownDipFaultSection) sect).getRowIndex() < currentMin)
-						currentMin = ((DownDipFaultSection) sect).getRowIndex();
+		int numRuptures = ruptures.size();
+		double[] rupMags = new double[numRuptures];
+		double[] rupRakes = new double[numRuptures];
+		double[] rupAreas = new double[numRuptures];
+		double[] rupLengths = new double[numRuptures];
+		rupAveSlips = new double[numRuptures];
+		int[][] rupsIDs = new int[numRuptures][];
+
+		// each rupture only writes to its own index, so the ruptures can be processed in parallel
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			pool.submit(() -> IntStream.range(0, numRuptures).parallel().forEach(r -> {
+				List<FaultSection> rupSects = ruptures.get(r).buildOrderedSectionList();
+				if (!keepClusterRuptures) {
+					ruptures.set(r, null);
 				}
-			}
-
-//			FaultSection sect0 = rup.clusters[0].startSect;
-//			if (DownDipFaultSection.class.isInstance(sect0))
-//				currentMin = ((DownDipFaultSection) sect0).getRowIndex();
-
-			Double length = 0d;
-			// iterate sections adding lengths from those in the minimum row
-			for (FaultSection sect : rupSects) {
-				if (DownDipFaultSection.class.isInstance(sect)) {
-					if (((DownDipFaultSection) sect).getRowIndex() == currentMin) {
-						length += sect.getTraceLength() * 1e3;
+				int numSects = rupSects.size();
+				int[] sectIDs = new int[numSects];
+				double[] sectAreas = new double[numSects];
+				double[] sectRakes = new double[numSects];
+				double totLength = 0d;
+				double totArea = 0d;
+				double totOrigArea = 0d; // not reduced for aseismicity
+
+				// downdip ruptures are as long as the sections in their top row (assumes there's just one downdip fault)
+				int minRow = Integer.MAX_VALUE;
+				double minRowLength = 0d;
+
+				for (int s = 0; s < numSects; s++) {
+					FaultSection sect = rupSects.get(s);
+					if (sect instanceof DownDipFaultSection) {
+						int row = ((DownDipFaultSection) sect).getRowIndex();
+						if (row < minRow) {
+							minRow = row;
+							minRowLength = 0d;
+						}
+						if (row == minRow) {
+							minRowLength += sect.getTraceLength() * 1e3;
+						}
+					} else {
+						// lengths for crustal sections
+						totLength += sect.getTraceLength() * 1e3; // km --> m;
 					}
-				}
-			}
-			if (length > 0)
-				ruptureLengths.put(rup, length);
-		}
 
-		for (int r = 0; r < ruptures.size(); r++) {
-			ClusterRupture rup = ruptures.get(r);
-			List<FaultSection> rupSects = rup.buildOrderedSectionList();
-			List<Integer> sectIDs = new ArrayList<>();
-			double totLength = 0d;
-			double totArea = 0d;
-			double totOrigArea = 0d; // not reduced for aseismicity
-			List<Double> sectAreas = new ArrayList<>();
-			List<Double> sectRakes = new ArrayList<>();
-			for (FaultSection sect : rupSects) {
-				// lengths for crustal sections
-				if (!DownDipFaultSection.class.isInstance(sect))
-					totLength += sect.getTraceLength() * 1e3; // km --> m;
-
-				sectIDs.add(sect.getSectionId());
-				double area = sectAreasReduced[sect.getSectionId()]; // sq-m
-				totArea += area;
-				totOrigArea += sectAreasOrig[sect.getSectionId()]; // sq-m
-				sectAreas.add(area);
-				sectRakes.add(sect.getAveRake());
-			}
-
-			// extend length for downdip ruptures
-			if (ruptureLengths.get(rup) != null)
-				totLength += ruptureLengths.get(rup);
-
-			rupAreas[r] = totArea;
-			rupLengths[r] = totLength;
-			rupRakes[r] = FaultUtils.getInRakeRange(FaultUtils.getScaledAngleAverage(sectAreas, sectRakes));
-			double origDDW = totOrigArea / totLength;
-			rupMags[r] = scale.getMag(totArea, origDDW);
-			rupsIDsList.add(sectIDs);
-			rupAveSlips[r] = scale.getAveSlip(totArea, totLength, origDDW);
+					int id = sect.getSectionId();
+					sectIDs[s] = id;
+					double area = sectAreasReduced[id]; // sq-m
+					totArea += area;
+					totOrigArea += sectAreasOrig[id]; // sq-m
+					sectAreas[s] = area;
+					sectRakes[s] = sect.getAveRake();
+				}
+				totLength += minRowLength;
+
+				rupAreas[r] = totArea;
+				rupLengths[r] = totLength;
+				rupRakes[r] = FaultUtils.getInRakeRange(getScaledAngleAverage(sectAreas, sectRakes));
+				double origDDW = totOrigArea / totLength;
+				rupMags[r] = scale.getMag(totArea, origDDW);
+				rupsIDs[r] = sectIDs;
+				rupAveSlips[r] = scale.getAveSlip(totArea, totLength, origDDW);
+			})).join();
+		} finally {
+			pool.shutdown();
 		}
+		List<List<Integer>> rupsIDsList = NZSHM22_RuptureSectionStore.fromArrays(rupsIDs);
 
 		String info = "Test down-dip subsectioning rup set";
 
 		//TODO: load slip rate StdDevs
 		init(subSections, sectSlipRates, sectSlipRateStdDevs, sectAreasReduced, rupsIDsList, rupMags, rupRakes, rupAreas, rupLengths,
 				info);
-		setClusterRuptures(ruptures);
+		if (keepClusterRuptures) {
+			setClusterRuptures(ruptures);
+		}
+	}
+
+	/**
+	 * Same as FaultUtils.getScaledAngleAverage(), but on primitive arrays.
+	 */
+	static double getScaledAngleAverage(double[] scalars, double[] angles) {
+		double xdir = 0;
+		double ydir = 0;
+		for (int i = 0; i < scalars.length; i++) {
+			xdir += scalars[i] * Math.cos(Math.toRadians(angles[i]));
+			ydir += scalars[i] * Math.sin(Math.toRadians(angles[i]));
+		}
+		double avg;
+		if (xdir > 0 & ydir >= 0)
+			avg = Math.toDegrees(Math.atan(ydir / xdir));
+		else if (xdir > 0 & ydir < 0)
+			avg = Math.toDegrees(Math.atan(ydir / xdir)) + 360;
+		else if (xdir < 0)
+			avg = Math.toDegrees(Math.atan(ydir / xdir)) + 180;
+		else if (xdir == 0 & ydir > 0)
+			avg = 90;
+		else if (xdir == 0 & ydir < 0)
+			avg = 270;
+		else
+			avg = 0; // if both xdir==0 & ydir=0
+		if (avg > 360)
+			return avg - 360;
+		return avg;
 	}
 
 	@Override
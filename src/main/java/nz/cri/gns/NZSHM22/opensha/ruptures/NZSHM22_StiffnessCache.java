@@ -0,0 +1,124 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import nz.cri.gns.NZSHM22.opensha.util.ContentHash;
+import org.opensha.commons.geo.Location;
+import org.opensha.sha.faultSurface.FaultSection;
+import org.opensha.sha.simulators.stiffness.AggregatedStiffnessCache;
+import org.opensha.sha.simulators.stiffness.SubSectStiffnessCalculator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Persists the stiffness results of a SubSectStiffnessCalculator between rupture set builds.
+ * The cache file is keyed by a hash of everything the stiffness depends on: the geometry and
+ * rake of the subsections, the grid spacing, the elastic parameters, the coefficient of friction,
+ * the patch alignment and the self stiffness cap. Changing plausibility thresholds therefore
+ * reuses the cache, while changing the fault model or stiffness parameters starts a new one.
+ */
+public class NZSHM22_StiffnessCache {
+
+    private final File cacheDir;
+    private final File cacheFile;
+    private int loadedSize = 0;
+
+    /**
+     * @param cacheDir the directory to keep cache files in
+     * @param subSections the subsections the calculator was created with
+     * @param gridSpacing the grid spacing the calculator was created with
+     * @param lameLambda  the lame lambda the calculator was created with
+     * @param lameMu      the lame mu the calculator was created with
+     * @param coeffOfFriction the coefficient of friction the calculator was created with
+     * @param alignment   the patch alignment the calculator was created with
+     * @param selfStiffnessCap the self stiffness cap the calculator was created with
+     * @param type        the stiffness type of the cache
+     */
+    public NZSHM22_StiffnessCache(File cacheDir, List<? extends FaultSection> subSections, double gridSpacing,
+                                  double lameLambda, double lameMu, double coeffOfFriction,
+                                  SubSectStiffnessCalculator.PatchAlignment alignment, double selfStiffnessCap,
+                                  SubSectStiffnessCalculator.StiffnessType type) {
+        this.cacheDir = cacheDir;
+        String key = getKey(subSections, gridSpacing, lameLambda, lameMu, coeffOfFriction, alignment,
+                selfStiffnessCap, type);
+        this.cacheFile = new File(cacheDir, "stiffness_" + type.name().toLowerCase() + "_" + key + ".csv");
+    }
+
+    public static String getKey(List<? extends FaultSection> subSections, double gridSpacing, double lameLambda,
+                                double lameMu, double coeffOfFriction,
+                                SubSectStiffnessCalculator.PatchAlignment alignment, double selfStiffnessCap,
+                                SubSectStiffnessCalculator.StiffnessType type) {
+        ContentHash hash = new ContentHash();
+        hash.add(subSections.size());
+        for (FaultSection section : subSections) {
+            hash.add(section.getSectionId());
+            hash.add(section.getParentSectionId());
+            hash.add(section.getFaultTrace().size());
+            for (Location location : section.getFaultTrace()) {
+                hash.add(location.getLatitude());
+                hash.add(location.getLongitude());
+                hash.add(location.getDepth());
+            }
+            hash.add(section.getAveDip());
+            hash.add(section.getDipDirection());
+            hash.add(section.getOrigAveUpperDepth());
+            hash.add(section.getAveLowerDepth());
+            hash.add(section.getAveRake());
+        }
+        hash.add(gridSpacing);
+        hash.add(lameLambda);
+        hash.add(lameMu);
+        hash.add(coeffOfFriction);
+        hash.add(alignment.name());
+        hash.add(selfStiffnessCap);
+        hash.add(type.name());
+        return hash.toHex();
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Loads the cache file into the stiffness cache if it exists.
+     *
+     * @param cache the stiffness cache of the calculator
+     * @return the number of cached values loaded
+     * @throws IOException
+     */
+    public int load(AggregatedStiffnessCache cache) throws IOException {
+        if (cacheFile.exists()) {
+            Stopwatch watch = Stopwatch.createStarted();
+            loadedSize = cache.loadCacheFile(cacheFile);
+            System.out.println("Loaded " + loadedSize + " cached stiffness values from " + cacheFile + " in " + watch);
+        }
+        return loadedSize;
+    }
+
+    /**
+     * Writes the stiffness cache to the cache file if it holds more values than were loaded.
+     *
+     * @param cache the stiffness cache of the calculator
+     * @throws IOException
+     */
+    public void save(AggregatedStiffnessCache cache) throws IOException {
+        if (cache.calcCacheSize() <= loadedSize) {
+            return;
+        }
+        Preconditions.checkState(cacheDir.exists() || cacheDir.mkdirs(), "Could not create %s", cacheDir);
+        File tmpFile = File.createTempFile("stiffness_", ".tmp", cacheDir);
+        try {
+            cache.writeCacheFile(tmpFile);
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            loadedSize = cache.calcCacheSize();
+            System.out.println("Wrote " + loadedSize + " stiffness values to " + cacheFile);
+        } finally {
+            tmpFile.delete();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import nz.cri.gns.NZSHM22.opensha.util.FaultSectionList;
+import org.opensha.sha.faultSurface.FaultSection;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Creates the subsections of crustal parent sections.
+ *
+ * Subsection ids are assigned consecutively in the order of the parents, starting at 0. The
+ * parallel path predicts the number of subsections of each parent from its trace length, so that
+ * every parent knows its first id up front. If any prediction turns out to be wrong, the
+ * subsections are recreated serially, so both paths always produce the same ids.
+ */
+public class NZSHM22_SubSectioning {
+
+    // the minimum number of subsections per parent
+    static final int MIN_SUB_SECTIONS = 2;
+
+    /**
+     * Creates the subsections using all available processors.
+     */
+    public static FaultSectionList buildSubSections(FaultSectionList parents, double maxSubSectionLength) {
+        return buildSubSections(parents, maxSubSectionLength, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parents             the parent sections
+     * @param maxSubSectionLength the maximum subsection length as a multiple of the down-dip width
+     * @param numThreads          the number of threads to use
+     * @return the subsections of all parents
+     */
+    public static FaultSectionList buildSubSections(FaultSectionList parents, double maxSubSectionLength,
+                                                    int numThreads) {
+        int[] firstIds = new int[parents.size() + 1];
+        for (int p = 0; p < parents.size(); p++) {
+            firstIds[p + 1] = firstIds[p] + predictNumSubSections(parents.get(p), maxSubSectionLength);
+        }
+
+        List<List<? extends FaultSection>> parentSubSects;
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            parentSubSects = pool.submit(() -> IntStream.range(0, parents.size()).parallel()
+                    .mapToObj(p -> getSubSections(parents.get(p), maxSubSectionLength, firstIds[p]))
+                    .collect(Collectors.<List<? extends FaultSection>>toList())).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int p = 0; p < parents.size(); p++) {
+            List<? extends FaultSection> subSects = parentSubSects.get(p);
+            if (subSects.size() != firstIds[p + 1] - firstIds[p]) {
+                System.out.println("Subsection count of " + parents.get(p).getName()
+                        + " differs from prediction, creating subsections serially");
+                return buildSubSectionsSerially(parents, maxSubSectionLength);
+            }
+            for (int s = 0; s < subSects.size(); s++) {
+                if (subSects.get(s).getSectionId() != firstIds[p] + s) {
+                    System.out.println("Subsection ids of " + parents.get(p).getName()
+                            + " are not consecutive, creating subsections serially");
+                    return buildSubSectionsSerially(parents, maxSubSectionLength);
+                }
+            }
+        }
+
+        FaultSectionList subSections = new FaultSectionList();
+        subSections.addParents(parents);
+        for (List<? extends FaultSection> subSects : parentSubSects) {
+            subSections.addAll(subSects);
+        }
+        return subSections;
+    }
+
+    /**
+     * Creates the subsections one parent at a time, each starting at the next free id.
+     */
+    public static FaultSectionList buildSubSectionsSerially(FaultSectionList parents, double maxSubSectionLength) {
+        FaultSectionList subSections = new FaultSectionList();
+        subSections.addParents(parents);
+        for (FaultSection parentSect : parents) {
+            subSections.addAll(getSubSections(parentSect, maxSubSectionLength, subSections.getSafeId()));
+        }
+        return subSections;
+    }
+
+    protected static List<? extends FaultSection> getSubSections(FaultSection parentSect, double maxSubSectionLength,
+                                                                 int firstId) {
+        double maxSectLength = parentSect.getOrigDownDipWidth() * maxSubSectionLength;
+        return parentSect.getSubSectionsList(maxSectLength, firstId, MIN_SUB_SECTIONS);
+    }
+
+    /**
+     * Mirrors the subsection count of FaultUtils.getEqualLengthSubsectionTraces().
+     */
+    protected static int predictNumSubSections(FaultSection parentSect, double maxSubSectionLength) {
+        double maxSectLength = parentSect.getOrigDownDipWidth() * maxSubSectionLength;
+        int numSubSections = (int) Math.ceil(parentSect.getFaultTrace().getTraceLength() / maxSectLength);
+        return Math.max(MIN_SUB_SECTIONS, numSubSections);
+    }
+}
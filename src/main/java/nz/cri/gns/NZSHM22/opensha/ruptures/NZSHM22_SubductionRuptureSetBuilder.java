@@ -1,11 +1,13 @@
 package nz.cri.gns.NZSHM22.opensha.ruptures;
 
 import java.io.*;
+import java.util.List;
 
 import nz.cri.gns.NZSHM22.opensha.enumTreeBranches.NZSHM22_FaultModels;
 import org.dom4j.DocumentException;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRuptureBuilder;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityConfiguration;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.impl.JumpAzimuthChangeFilter;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.ClusterConnectionStrategy;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.RuptureGrowingStrategy;
@@ -155,8 +157,21 @@ public class NZSHM22_SubductionRuptureSetBuilder extends NZSHM22_AbstractRupture
 		return this;
 	}	
 
-	private void buildConfig() {
-		SectionDistanceAzimuthCalculator distAzCalc = new SectionDistanceAzimuthCalculator(subSections);
+	/**
+	 * Thins ruptures while they are grown, see RuptureThinning.asFilter()
+	 */
+	@Override
+	protected List<PlausibilityFilter> getGrowthFilters(PlausibilityConfiguration config) {
+		List<PlausibilityFilter> filters = super.getGrowthFilters(config);
+		if (thinningFactor > 0) {
+			filters.add(RuptureThinning.asFilter("RuptureThinning",
+					RuptureThinning.thinningPredicate(thinningFactor, config.getConnectionStrategy())));
+		}
+		return filters;
+	}
+
+	private void buildConfig() throws IOException {
+		SectionDistanceAzimuthCalculator distAzCalc = createDistAzCalc();
 		JumpAzimuthChangeFilter.AzimuthCalc azimuthCalc = new JumpAzimuthChangeFilter.SimpleAzimuthCalc(distAzCalc);
 
 		// connection strategy: parent faults connect at closest point, and only when
@@ -184,12 +199,15 @@ public class NZSHM22_SubductionRuptureSetBuilder extends NZSHM22_AbstractRupture
 	@Override
 	public NZSHM22_SlipEnabledRuptureSet buildRuptureSet() throws DocumentException, IOException {
 
+		startBuild();
+		stageTimer.start("load faults");
 	    loadFaults();
 
+		stageTimer.start("plausibility config");
 	    buildConfig();
 		System.out.println("Built PlausibilityConfiguration");  
 		
-		builder = new ClusterRuptureBuilder(getPlausibilityConfig());
+		builder = new ClusterRuptureBuilder(createGrowthConfig(getPlausibilityConfig()));
 		System.out.println("initialised ClusterRuptureBuilder");
 
 		// CBC debugging...
@@ -205,30 +223,18 @@ public class NZSHM22_SubductionRuptureSetBuilder extends NZSHM22_AbstractRupture
 		
 		// debugging
 		// numThreads = 1;
+		stageTimer.start("build ruptures");
 		ruptures = getBuilder().build(permutationStrategy, numThreads);
 
 		if (thinningFactor <= 0) {
 			System.out.println("Built " + ruptures.size() + " total ruptures");
 		} else {
-			ruptures = RuptureThinning.filterRuptures(ruptures,
-					RuptureThinning.downDipPredicate().or(RuptureThinning
-							.coarsenessPredicate(thinningFactor)
-							.or(RuptureThinning.endToEndPredicate(getPlausibilityConfig().getConnectionStrategy()))));
 			System.out.println("Built " + ruptures.size() + " total ruptures after thinning");
 		}
 
-		// TODO: consider overloading this for Hikurangi to provide
-		// Slip{DOWNDIP}RuptureModel (or similar) see [KKS,CBC]
-		NZSHM22_SlipEnabledRuptureSet rupSet = null;
-		try {
-			rupSet = new NZSHM22_SlipEnabledRuptureSet(ruptures, subSections,
-					this.getScalingRelationship(), this.getSlipAlongRuptureModel());
-			rupSet.setPlausibilityConfiguration(getPlausibilityConfig());
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		return rupSet;
+		addUnchangedRuptures(getPlausibilityConfig());
+
+		return assembleRuptureSet(getPlausibilityConfig());
 	}
 
     public static void main(String[] args) throws DocumentException, IOException {
@@ -2,8 +2,10 @@ package nz.cri.gns.NZSHM22.opensha.ruptures;
 
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.ClusterConnectionStrategy;
 import org.opensha.sha.faultSurface.FaultSection;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,6 +29,47 @@ public class RuptureThinning {
         return ruptures.stream().filter(predicate).collect(Collectors.toList());
     }
 
+    /**
+     * The thinning used by the builders: keeps downdip ruptures, ruptures of an acceptable size and
+     * ruptures that go from the start of a fault to the end of a fault.
+     * @param thinningFactor the scalar of the coarsenessPredicate
+     * @param connectionStrategy the ClusterConnectionStrategy that is used when generating the ruptures
+     * @return a predicate
+     */
+    public static Predicate<ClusterRupture> thinningPredicate(double thinningFactor, ClusterConnectionStrategy connectionStrategy) {
+        return downDipPredicate()
+                .or(coarsenessPredicate(thinningFactor)
+                        .or(endToEndPredicate(connectionStrategy)));
+    }
+
+    /**
+     * Turns a thinning predicate into a PlausibilityFilter, so that ruptures can be thinned while they are
+     * grown instead of after the build. Ruptures that fail the predicate are not kept, but are still grown
+     * further, as a larger rupture may pass. This makes the result the same as using filterRuptures()
+     * on the full build.
+     * @param name the name of the filter
+     * @param predicate a rupture predicate that indicates which ruptures to keep
+     * @return a PlausibilityFilter
+     */
+    public static PlausibilityFilter asFilter(String name, Predicate<ClusterRupture> predicate) {
+        return new PlausibilityFilter() {
+            @Override
+            public String getShortName() {
+                return name;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public PlausibilityResult apply(ClusterRupture rupture, boolean verbose) {
+                return predicate.test(rupture) ? PlausibilityResult.PASS : PlausibilityResult.FAIL_FUTURE_POSSIBLE;
+            }
+        };
+    }
+
     /**
      * Returns a predicate that takes a ClusterRupture and returns true iff the rupture is on a downdip fault.
      * @return
@@ -0,0 +1,32 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures.downDip;
+
+/**
+ * A summed-area table of the populated cells of a down-dip grid. Counts the populated
+ * subsections of any rectangle in constant time.
+ */
+public class DownDipFillTable {
+
+    // table[col][row] is the number of populated cells in columns < col and rows < row
+    private final int[][] table;
+
+    public DownDipFillTable(DownDipSubSectBuilder builder) {
+        int rows = builder.getNumRows();
+        int cols = builder.getNumCols();
+        table = new int[cols + 1][rows + 1];
+        for (int c = 0; c < cols; c++) {
+            for (int r = 0; r < rows; r++) {
+                int populated = builder.getSubSect(r, c) != null ? 1 : 0;
+                table[c + 1][r + 1] = table[c][r + 1] + table[c + 1][r] - table[c][r] + populated;
+            }
+        }
+    }
+
+    /**
+     * @return the number of populated cells in the rectangle
+     */
+    public int getCount(int startRow, int startCol, int rowCount, int colCount) {
+        int endRow = startRow + rowCount;
+        int endCol = startCol + colCount;
+        return table[endCol][endRow] - table[startCol][endRow] - table[endCol][startRow] + table[startCol][startRow];
+    }
+}
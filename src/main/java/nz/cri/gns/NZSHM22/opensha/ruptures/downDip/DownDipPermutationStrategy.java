@@ -2,6 +2,8 @@ package nz.cri.gns.NZSHM22.opensha.ruptures.downDip;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import nz.cri.gns.NZSHM22.opensha.ruptures.DownDipFaultSection;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
@@ -20,6 +22,12 @@ public class DownDipPermutationStrategy implements RuptureGrowingStrategy {
     }
 
     private Constraint constraint;
+    // fill counts per down-dip fault, shared by all threads that grow ruptures with this strategy
+    private final Map<DownDipSubSectBuilder, DownDipFillTable> fillTables = new ConcurrentHashMap<>();
+    // down-dip permutations per cluster and start section. Growing ruptures asks for the permutations
+    // of a start section on every jump onto it, so they are built once and shared
+    private final Map<FaultSubsectionCluster, Map<FaultSection, List<FaultSubsectionCluster>>> permutationCache =
+            new ConcurrentHashMap<>();
 
     private final RuptureGrowingStrategy crustalStrategy;
     private static final boolean D = false;
@@ -93,18 +101,15 @@ public class DownDipPermutationStrategy implements RuptureGrowingStrategy {
     public DownDipPermutationStrategy addMinFillConstraint(double minFill) {
         Preconditions.checkArgument(0 < minFill && minFill <= 1);
         return addConstraint((builder, startRow, startCol, rowCount, colCount) -> {
-            int count = 0;
-            for (int r = startRow; r < (startRow + rowCount); r++) {
-                for (int c = startCol; c < (startCol + colCount); c++) {
-                    if (null != builder.getSubSect(r, c)) {
-                        count++;
-                    }
-                }
-            }
+            int count = getFillTable(builder).getCount(startRow, startCol, rowCount, colCount);
             return count / ((double) rowCount * colCount) >= minFill;
         });
     }
 
+    protected DownDipFillTable getFillTable(DownDipSubSectBuilder builder) {
+        return fillTables.computeIfAbsent(builder, DownDipFillTable::new);
+    }
+
     private boolean applyConstraint(DownDipSubSectBuilder builder, int startRow, int startCol, int endRow, int endCol) {
         if (constraint == null) {
             return true;
@@ -128,54 +133,61 @@ public class DownDipPermutationStrategy implements RuptureGrowingStrategy {
         int myInd = fullCluster.subSects.indexOf(firstSection);
         Preconditions.checkState(myInd >= 0, "first section not found in cluster");
 
-        List<FaultSubsectionCluster> permutations = new ArrayList<>();
-
         DownDipSubSectBuilder downDipBuilder = DownDipFaultSection.getBuilder(fullCluster);
         if (downDipBuilder == null) {
-            permutations = crustalStrategy.getVariations(fullCluster, firstSection);
-        } else {
-            // this is a down-dip fault section, only build rectangular permutations
-            int startCol = downDipBuilder.getColumn(firstSection);
-            int startRow = downDipBuilder.getRow(firstSection);
-
-            if (D) System.out.println("Building permutations from " + startRow + ", " + startCol);
-
-            int rows = downDipBuilder.getNumRows();
-            int cols = downDipBuilder.getNumCols();
-
-            // build down-dip first, starting with single row
-            if (D) System.out.println("\tbuilding down-dip");
-            for (int endRow = startRow; endRow < rows; endRow++) {
-                // build to the right first (including single column)
-                for (int endCol = startCol; endCol < cols; endCol++)
-                    if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
-                        permutations.add(buildRectangularPermutation(
-                                downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
-                    }
-                // build to the left
-                for (int endCol = startCol; --endCol >= 0; )
-                    if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
-                        permutations.add(buildRectangularPermutation(
-                                downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
-                    }
-            }
+            return crustalStrategy.getVariations(fullCluster, firstSection);
+        }
+        List<FaultSubsectionCluster> permutations = permutationCache
+                .computeIfAbsent(fullCluster, cluster -> new ConcurrentHashMap<>())
+                .computeIfAbsent(firstSection, sect -> buildDownDipVariations(downDipBuilder, fullCluster, sect));
+        return new ArrayList<>(permutations);
+    }
 
-            // build up-dip
-            if (D) System.out.println("\tbuilding up-dip");
-            for (int endRow = startRow; --endRow >= 0; ) {
-                // build to the right first (including single column)
-                for (int endCol = startCol; endCol < cols; endCol++)
-                    if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
-                        permutations.add(buildRectangularPermutation(
-                                downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
-                    }
-                // build to the left
-                for (int endCol = startCol; --endCol >= 0; )
-                    if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
-                        permutations.add(buildRectangularPermutation(
-                                downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
-                    }
-            }
+    private List<FaultSubsectionCluster> buildDownDipVariations(DownDipSubSectBuilder downDipBuilder,
+                                                                FaultSubsectionCluster fullCluster,
+                                                                FaultSection firstSection) {
+        List<FaultSubsectionCluster> permutations = new ArrayList<>();
+        // this is a down-dip fault section, only build rectangular permutations
+        int startCol = downDipBuilder.getColumn(firstSection);
+        int startRow = downDipBuilder.getRow(firstSection);
+
+        if (D) System.out.println("Building permutations from " + startRow + ", " + startCol);
+
+        int rows = downDipBuilder.getNumRows();
+        int cols = downDipBuilder.getNumCols();
+
+        // build down-dip first, starting with single row
+        if (D) System.out.println("\tbuilding down-dip");
+        for (int endRow = startRow; endRow < rows; endRow++) {
+            // build to the right first (including single column)
+            for (int endCol = startCol; endCol < cols; endCol++)
+                if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
+                    permutations.add(buildRectangularPermutation(
+                            downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
+                }
+            // build to the left
+            for (int endCol = startCol; --endCol >= 0; )
+                if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
+                    permutations.add(buildRectangularPermutation(
+                            downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
+                }
+        }
+
+        // build up-dip
+        if (D) System.out.println("\tbuilding up-dip");
+        for (int endRow = startRow; --endRow >= 0; ) {
+            // build to the right first (including single column)
+            for (int endCol = startCol; endCol < cols; endCol++)
+                if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
+                    permutations.add(buildRectangularPermutation(
+                            downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
+                }
+            // build to the left
+            for (int endCol = startCol; --endCol >= 0; )
+                if (applyConstraint(downDipBuilder, startRow, startCol, endRow, endCol)) {
+                    permutations.add(buildRectangularPermutation(
+                            downDipBuilder, fullCluster, startRow, startCol, endRow, endCol));
+                }
         }
         return permutations;
     }
@@ -192,13 +204,10 @@ public class DownDipPermutationStrategy implements RuptureGrowingStrategy {
 
     private FaultSubsectionCluster buildRectangularPermutation(DownDipSubSectBuilder downDipBuilder, FaultSubsectionCluster fullCluster,
                                                                int startRow, int startCol, int endRow, int endCol) {
+        // all sections are also exit points from this rupture (sections from which we can jump to another
+        // fault without it being considered a splay jump), so the same list is used for both
         List<FaultSection> subsetSects = new ArrayList<>();
 
-        // this is a list of all exit points from this rupture (sections from which we can jump to another
-        // fault without it being considered a splay jump). we'll define that now as the far edges from the
-        // starting point, though other strategies likely exist
-        List<FaultSection> exitPoints = new ArrayList<>();
-
 //		if (D) System.out.println("\t\trow span: "+startRow+" => "+endRow+": "+printIndexes(startRow, endRow));
 //		if (D) System.out.println("\t\tcol span: "+startCol+" => "+endCol+": "+printIndexes(startCol, endCol));
 //		
@@ -209,12 +218,14 @@ public class DownDipPermutationStrategy implements RuptureGrowingStrategy {
                 FaultSection sect = downDipBuilder.getSubSect(row, col);
                 if (sect != null) {
                     subsetSects.add(sect);
-                    exitPoints.add(sect);
                 }
             }
         }
         Preconditions.checkState(subsetSects.get(0).equals(downDipBuilder.getSubSect(startRow, startCol)));
-        FaultSubsectionCluster permutation = new FaultSubsectionCluster(subsetSects, exitPoints);
+        FaultSubsectionCluster permutation = new FaultSubsectionCluster(subsetSects, subsetSects);
+        if (fullCluster.getConnections().isEmpty()) {
+            return permutation;
+        }
         // add possible jumps out of this permutation
         for (FaultSection sect : subsetSects)
             for (Jump jump : fullCluster.getConnections(sect))
@@ -0,0 +1,97 @@
+package nz.cri.gns.NZSHM22.opensha.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Builds a SHA-256 hash over a sequence of values. Used to key on-disk caches by
+ * the content of their inputs rather than by file names or timestamps.
+ */
+public class ContentHash {
+
+    private final MessageDigest digest;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    public ContentHash() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public ContentHash add(int value) {
+        buffer.clear();
+        buffer.putInt(value);
+        digest.update(buffer.array(), 0, Integer.BYTES);
+        return this;
+    }
+
+    public ContentHash add(long value) {
+        buffer.clear();
+        buffer.putLong(value);
+        digest.update(buffer.array(), 0, Long.BYTES);
+        return this;
+    }
+
+    public ContentHash add(double value) {
+        return add(Double.doubleToLongBits(value));
+    }
+
+    public ContentHash add(boolean value) {
+        digest.update((byte) (value ? 1 : 0));
+        return this;
+    }
+
+    public ContentHash add(String value) {
+        if (value == null) {
+            return add(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        add(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    /**
+     * Adds an array. The length is part of the hash and null is distinct from an
+     * empty array.
+     */
+    public ContentHash add(double[] values) {
+        if (values == null) {
+            return add(-1);
+        }
+        add(values.length);
+        for (double value : values) {
+            add(value);
+        }
+        return this;
+    }
+
+    public ContentHash add(List<Integer> values) {
+        if (values == null) {
+            return add(-1);
+        }
+        add(values.size());
+        for (int value : values) {
+            add(value);
+        }
+        return this;
+    }
+
+    /**
+     * @return the hash as a lower case hex string. The hash cannot be added to
+     * after this.
+     */
+    public String toHex() {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
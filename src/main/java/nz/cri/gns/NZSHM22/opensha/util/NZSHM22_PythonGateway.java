@@ -17,6 +17,7 @@ import nz.cri.gns.NZSHM22.util.NZSHM22_InversionDiagnosticsReportBuilder;
 import org.dom4j.DocumentException;
 
 import nz.cri.gns.NZSHM22.opensha.hazard.NZSHM22_HazardCalculatorBuilder;
+import nz.cri.gns.NZSHM22.opensha.inversion.NZSHM22_BatchInversionRunner;
 import nz.cri.gns.NZSHM22.opensha.inversion.NZSHM22_CrustalInversionRunner;
 import nz.cri.gns.NZSHM22.opensha.inversion.NZSHM22_InversionFaultSystemSolution;
 import nz.cri.gns.NZSHM22.opensha.inversion.NZSHM22_SubductionInversionRunner;
@@ -82,6 +83,13 @@ public class NZSHM22_PythonGateway {
         return subductionInversionRunner;
     }
 
+    /**
+     * Get a new batch runner for running many inversions in this JVM.
+     */
+    public static NZSHM22_BatchInversionRunner getBatchInversionRunner() {
+        return new NZSHM22_BatchInversionRunner();
+    }
+
     public static NZSHM22_HazardCalculatorBuilder getHazardCalculatorBuilder() {
         hazardCalcBuilder = new NZSHM22_HazardCalculatorBuilder();
         return hazardCalcBuilder;
@@ -177,6 +185,7 @@ public class NZSHM22_PythonGateway {
         public void writeRuptureSet(String rupSetFileName) throws IOException {
             File rupSetFile = new File(rupSetFileName);
             FaultSystemIO.writeRupSet(ruptureSet, rupSetFile);
+            writeFilterProfile(rupSetFile);
         }
     }
 
@@ -208,6 +217,17 @@ public class NZSHM22_PythonGateway {
             return this;
         }
 
+        /**
+         * Sets a directory to keep stiffness results in between builds
+         *
+         * @param stiffnessCacheDirName the cache directory
+         * @return this builder
+         */
+        public NZSHM22_CachedCoulombRuptureSetBuilder setStiffnessCacheDir(String stiffnessCacheDirName) {
+            setStiffnessCacheDir(new File(stiffnessCacheDirName));
+            return this;
+        }
+
         /**
          * Caches the results of the build
          */
@@ -226,6 +246,7 @@ public class NZSHM22_PythonGateway {
         public void writeRuptureSet(String rupSetFileName) throws IOException {
             File rupSetFile = new File(rupSetFileName);
             FaultSystemIO.writeRupSet(ruptureSet, rupSetFile);
+            writeFilterProfile(rupSetFile);
         }
     }
 
@@ -253,6 +274,7 @@ public class NZSHM22_PythonGateway {
         public void writeRuptureSet(String rupSetFileName) throws IOException {
             File rupSetFile = new File(rupSetFileName);
             FaultSystemIO.writeRupSet(ruptureSet, rupSetFile);
+            writeFilterProfile(rupSetFile);
         }
     }
 
@@ -275,6 +297,18 @@ public class NZSHM22_PythonGateway {
             return solution;
         }
 
+        /**
+         * like resumeInversion(File checkpoint), but caches the result
+         *
+         * @return the solution
+         * @throws IOException
+         * @throws DocumentException
+         */
+        public NZSHM22_InversionFaultSystemSolution resumeInversion(File checkpoint) throws IOException, DocumentException {
+            solution = super.resumeInversion(checkpoint);
+            return solution;
+        }
+
         /**
          * Writes the cached solution (see the run method) to file.
          *
@@ -304,6 +338,18 @@ public class NZSHM22_PythonGateway {
             return solution;
         }
 
+        /**
+         * like resumeInversion(File checkpoint), but caches the result
+         *
+         * @return the solution
+         * @throws IOException
+         * @throws DocumentException
+         */
+        public NZSHM22_InversionFaultSystemSolution resumeInversion(File checkpoint) throws IOException, DocumentException {
+            solution = super.resumeInversion(checkpoint);
+            return solution;
+        }
+
         /**
          * Writes the cached solution (see the run method) to file.
          *
@@ -19,6 +19,21 @@ public class NZSHM22_FaultModelsTest {
         }
     }
 
+    @Test
+    public void testFetchFaultSectionsCopiesCachedSections() throws DocumentException, IOException {
+        FaultSectionList first = new FaultSectionList();
+        NZSHM22_FaultModels.CFM_0_9_SANSTVZ_D90.fetchFaultSections(first);
+        FaultSectionList second = new FaultSectionList();
+        NZSHM22_FaultModels.CFM_0_9_SANSTVZ_D90.fetchFaultSections(second);
+
+        assertEquals(first.size(), second.size());
+        for (int s = 0; s < first.size(); s++) {
+            assertNotSame(first.get(s), second.get(s));
+            assertEquals(first.get(s).getSectionId(), second.get(s).getSectionId());
+            assertEquals(first.get(s).getFaultTrace(), second.get(s).getFaultTrace());
+        }
+    }
+
     @Test
     public void testFetchNamedFaults() {
         // just checking that we don't explode
@@ -0,0 +1,57 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import static org.junit.Assert.*;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class EnergyPlateauCompletionCriteriaTest {
+
+    static final long HOUR = 60 * 60 * 1000;
+
+    @Test
+    public void testTheilSenSlopeIgnoresOutliers() {
+        double[] x = {0, 1, 2, 3, 4};
+        double[] y = {10, 8, 100, 4, 2};
+        assertEquals(-2, EnergyPlateauCompletionCriteria.theilSenSlope(x, y), 1e-12);
+    }
+
+    @Test
+    public void testRelativeImprovementPerHour() {
+        double[] hours = {0, 1, 2};
+        assertEquals(0.1, EnergyPlateauCompletionCriteria.relativeImprovementPerHour(hours, new double[]{110, 100, 90}), 1e-12);
+        assertEquals(0, EnergyPlateauCompletionCriteria.relativeImprovementPerHour(hours, new double[]{0, 0, 0}), 0);
+    }
+
+    @Test
+    public void testPlateau() {
+        EnergyPlateauCompletionCriteria criteria = new EnergyPlateauCompletionCriteria(3, 0.01);
+        Map<String, Double> ranges = ImmutableMap.of("a", 50d);
+
+        // flat, but the window is not full yet
+        assertFalse(criteria.isSatisfied(HOUR, 100, ranges));
+        assertFalse(criteria.isSatisfied(2 * HOUR, 100, ranges));
+        assertTrue(Double.isNaN(criteria.getTotalImprovementPerHour()));
+
+        assertTrue(criteria.isSatisfied(3 * HOUR, 100, ranges));
+        assertTrue(criteria.isPlateauReached());
+        assertEquals(0, criteria.getTotalImprovementPerHour(), 0);
+    }
+
+    @Test
+    public void testConstraintStillImproving() {
+        EnergyPlateauCompletionCriteria criteria = new EnergyPlateauCompletionCriteria(3, 0.01);
+
+        // the total is flat but constraint "a" is still improving by 10% per hour
+        assertFalse(criteria.isSatisfied(HOUR, 100, ImmutableMap.of("a", 11d)));
+        assertFalse(criteria.isSatisfied(2 * HOUR, 100, ImmutableMap.of("a", 10d)));
+        assertFalse(criteria.isSatisfied(3 * HOUR, 100, ImmutableMap.of("a", 9d)));
+        assertFalse(criteria.isPlateauReached());
+
+        // once it stops improving, the plateau is reached
+        assertFalse(criteria.isSatisfied(4 * HOUR, 100, ImmutableMap.of("a", 9d)));
+        assertTrue(criteria.isSatisfied(5 * HOUR, 100, ImmutableMap.of("a", 9d)));
+    }
+}
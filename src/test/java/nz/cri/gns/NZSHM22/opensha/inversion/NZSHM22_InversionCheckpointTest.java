@@ -0,0 +1,42 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class NZSHM22_InversionCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws IOException {
+        Map<String, Double> energies = new HashMap<>();
+        energies.put("Slip Rate", 12.5);
+        energies.put("MFD Equality", 0.25);
+        NZSHM22_InversionCheckpoint expected = new NZSHM22_InversionCheckpoint(123456, 1000, 400,
+                new double[]{3, 2, 0, 1}, new double[]{0, 1e-5, 2e-7}, energies);
+
+        File file = new File(folder.getRoot(), "inversion.checkpoint");
+        expected.write(file);
+        // writing again replaces the previous checkpoint
+        expected.write(file);
+
+        NZSHM22_InversionCheckpoint actual = NZSHM22_InversionCheckpoint.read(file);
+
+        assertEquals(expected.getElapsedMillis(), actual.getElapsedMillis());
+        assertEquals(expected.getIterations(), actual.getIterations());
+        assertEquals(expected.getPerturbations(), actual.getPerturbations());
+        assertArrayEquals(expected.getEnergy(), actual.getEnergy(), 0);
+        assertArrayEquals(expected.getBestSolution(), actual.getBestSolution(), 0);
+        assertEquals(energies, actual.getEnergies());
+        assertFalse(new File(folder.getRoot(), "inversion.checkpoint.tmp").exists());
+    }
+}
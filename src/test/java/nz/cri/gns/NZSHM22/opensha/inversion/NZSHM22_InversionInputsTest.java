@@ -0,0 +1,75 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import static org.junit.Assert.*;
+
+import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import scratch.UCERF3.simulatedAnnealing.ConstraintRange;
+
+import java.io.File;
+import java.io.IOException;
+
+public class NZSHM22_InversionInputsTest {
+
+    protected NZSHM22_InversionInputs createInputs() {
+        SparseCCDoubleMatrix2D A = new SparseCCDoubleMatrix2D(new double[][]{
+                {1, 2},
+                {3, 0},
+                {0, 4}});
+        SparseCCDoubleMatrix2D A_ineq = new SparseCCDoubleMatrix2D(new double[][]{{5, 6}});
+        return new NZSHM22_InversionInputs(A, new double[]{1, 2, 3}, A_ineq, new double[]{4},
+                Lists.newArrayList(
+                        new ConstraintRange("Slip", "SR", 0, 2, false),
+                        new ConstraintRange("MFD Equality", "MFDEq", 2, 3, false),
+                        new ConstraintRange("MFD Inequality", "MFDIneq", 0, 1, true)),
+                new double[]{0, 0}, null);
+    }
+
+    @Test
+    public void testScaleRanges() {
+        NZSHM22_InversionInputs inputs = createInputs();
+        NZSHM22_InversionInputs scaled = inputs.scaleRanges(ImmutableMap.of("MFD Equality", 10d, "MFD Inequality", 0.5));
+
+        assertArrayEquals(new double[][]{{1, 2}, {3, 0}, {0, 40}}, scaled.getA().toArray());
+        assertArrayEquals(new double[]{1, 2, 30}, scaled.getD(), 0);
+        assertArrayEquals(new double[][]{{2.5, 3}}, scaled.getA_ineq().toArray());
+        assertArrayEquals(new double[]{2}, scaled.getD_ineq(), 0);
+
+        // the original inputs are not changed
+        assertArrayEquals(new double[][]{{1, 2}, {3, 0}, {0, 4}}, inputs.getA().toArray());
+        assertArrayEquals(new double[]{1, 2, 3}, inputs.getD(), 0);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws IOException {
+        NZSHM22_InversionInputs inputs = createInputs();
+        File file = folder.newFile("inputs.bin");
+        inputs.write(file);
+
+        // small windows make every array span several mapped windows
+        for (int windowSize : new int[]{8, 13, Integer.MAX_VALUE}) {
+            NZSHM22_InversionInputs actual = NZSHM22_InversionInputs.read(file, windowSize);
+            assertArrayEquals(inputs.getA().toArray(), actual.getA().toArray());
+            assertArrayEquals(inputs.getD(), actual.getD(), 0);
+            assertArrayEquals(inputs.getA_ineq().toArray(), actual.getA_ineq().toArray());
+            assertArrayEquals(inputs.getD_ineq(), actual.getD_ineq(), 0);
+            assertArrayEquals(inputs.getInitialSolution(), actual.getInitialSolution(), 0);
+            assertNull(actual.getWaterLevelRates());
+            assertEquals(3, actual.getConstraintRowRanges().size());
+            assertEquals("MFDIneq", actual.getConstraintRowRanges().get(2).shortName);
+            assertTrue(actual.getConstraintRowRanges().get(2).inequality);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testScaleUnknownRange() {
+        createInputs().scaleRanges(ImmutableMap.of("Paleo", 2d));
+    }
+}
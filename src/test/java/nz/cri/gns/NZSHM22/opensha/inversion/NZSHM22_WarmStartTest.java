@@ -0,0 +1,58 @@
+package nz.cri.gns.NZSHM22.opensha.inversion;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.opensha.sha.faultSurface.FaultSection;
+import scratch.UCERF3.FaultSystemRupSet;
+
+import java.util.List;
+
+public class NZSHM22_WarmStartTest {
+
+    /**
+     * Creates a rupture set mock where section index i has section id 100 + i
+     */
+    protected FaultSystemRupSet mockRupSet(List<List<Integer>> ruptures) {
+        FaultSystemRupSet rupSet = mock(FaultSystemRupSet.class);
+        when(rupSet.getNumRuptures()).thenReturn(ruptures.size());
+        for (int r = 0; r < ruptures.size(); r++) {
+            when(rupSet.getSectionsIndicesForRup(r)).thenReturn(ruptures.get(r));
+        }
+        for (int s = 0; s < 10; s++) {
+            FaultSection section = mock(FaultSection.class);
+            when(section.getSectionId()).thenReturn(100 + s);
+            when(rupSet.getFaultSectionData(s)).thenReturn(section);
+        }
+        return rupSet;
+    }
+
+    @Test
+    public void testRemapRates() {
+        FaultSystemRupSet from = mockRupSet(Lists.newArrayList(
+                Lists.newArrayList(0, 1),
+                Lists.newArrayList(1, 2, 3),
+                Lists.newArrayList(4)));
+        double[] fromRates = {0.1, 0.2, 0.3};
+
+        // same ruptures in a different order and section order, plus one new rupture
+        FaultSystemRupSet to = mockRupSet(Lists.newArrayList(
+                Lists.newArrayList(5, 6),
+                Lists.newArrayList(3, 2, 1),
+                Lists.newArrayList(1, 0)));
+        double[] fallback = {0.5, 0.5, 0.5};
+
+        double[] actual = NZSHM22_WarmStart.remapRates(from, fromRates, to, fallback, null);
+        assertArrayEquals(new double[]{0.5, 0.2, 0.1}, actual, 0);
+        // the fallback rates are not modified
+        assertArrayEquals(new double[]{0.5, 0.5, 0.5}, fallback, 0);
+
+        // the water level is removed from matched rates
+        double[] waterLevel = {0.01, 0.01, 0.15};
+        actual = NZSHM22_WarmStart.remapRates(from, fromRates, to, fallback, waterLevel);
+        assertArrayEquals(new double[]{0.5, 0.19, 0}, actual, 1e-12);
+    }
+}
@@ -1,8 +1,8 @@
 package nz.cri.gns.NZSHM22.opensha.ruptures;
 
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static nz.cri.gns.NZSHM22.opensha.ruptures.RuptureMocks.mockClusterRupture;
+import static nz.cri.gns.NZSHM22.opensha.ruptures.RuptureMocks.mockJump;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -91,37 +91,48 @@ public class FaultIdFilterTest {
 
     }
 
-    public FaultSubsectionCluster mockFaultSubsectionCluster(int parentId) {
-        List<FaultSection> sections = new ArrayList<>();
-        FaultSection section = mock(FaultSection.class);
-        when(section.getParentSectionId()).thenReturn(parentId);
-        sections.add(section);
-        return new FaultSubsectionCluster(sections);
+    @Test
+    public void withinTest() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        FaultIdFilter filter = FaultIdFilter.create(FaultIdFilter.FilterType.WITHIN, Sets.newHashSet(1, 41));
+
+        assertEquals(PlausibilityResult.PASS,
+                filter.apply(mockClusterRupture(1), false));
+        assertEquals(PlausibilityResult.PASS,
+                filter.apply(mockClusterRupture(1, 41), false));
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP,
+                filter.apply(mockClusterRupture(1, 41, 5), false));
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP,
+                filter.apply(mockClusterRupture(5, 6), false));
     }
 
-    public ClusterRupture mockClusterRupture(int... parentIds) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        FaultSubsectionCluster[] clusters = new FaultSubsectionCluster[parentIds.length];
-        for (int i = 0; i < clusters.length; i++) {
-            clusters[i] = mockFaultSubsectionCluster(parentIds[i]);
-        }
-        List<Integer> jumps = new LinkedList<>();
-        for (int i = 0; i < parentIds.length - 1; i++) {
-            jumps.add(i);
-        }
-        UniqueRupture u1 = mock(UniqueRupture.class);
-        when(u1.size()).thenReturn(parentIds.length - 1);
-        UniqueRupture u2 = mock(UniqueRupture.class);
-        when(u2.size()).thenReturn(parentIds.length - 1);
-
-        Constructor<ClusterRupture> con = ClusterRupture.class.getDeclaredConstructor(
-                FaultSubsectionCluster[].class, ImmutableList.class, ImmutableMap.class, UniqueRupture.class, UniqueRupture.class, Boolean.TYPE);
-        con.setAccessible(true);
-        return con.newInstance(clusters, ImmutableList.copyOf(jumps), ImmutableMap.of(), u1, u2, true);
+    @Test
+    public void countsDistinctParentsTest() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        FaultIdFilter all = FaultIdFilter.create(FaultIdFilter.FilterType.ALL, Sets.newHashSet(1, 41));
+        FaultIdFilter exact = FaultIdFilter.create(FaultIdFilter.FilterType.EXACT, Sets.newHashSet(1, 41));
+
+        // a repeated parent must not count twice, and parents seen by earlier calls must not count
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE,
+                all.apply(mockClusterRupture(1, 1), false));
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE,
+                all.apply(mockClusterRupture(41, 41), false));
+        assertEquals(PlausibilityResult.PASS,
+                all.apply(mockClusterRupture(41, 2, 1), false));
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE,
+                exact.apply(mockClusterRupture(1, 1), false));
+        assertEquals(PlausibilityResult.PASS,
+                exact.apply(mockClusterRupture(41, 1), false));
     }
 
-    public Jump mockJump(int toParentId) {
-        FaultSubsectionCluster to = mockFaultSubsectionCluster(toParentId);
-        FaultSubsectionCluster from = mockFaultSubsectionCluster(0); // unused, only there for assertion in constructor
-        return new Jump(from.startSect, from, to.startSect, to, 0);
+    @Test
+    public void emptyFaultIdsTest() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE,
+                FaultIdFilter.create(FaultIdFilter.FilterType.ANY, new HashSet<>()).apply(mockClusterRupture(1), false));
+        assertEquals(PlausibilityResult.PASS,
+                FaultIdFilter.create(FaultIdFilter.FilterType.ALL, new HashSet<>()).apply(mockClusterRupture(1), false));
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP,
+                FaultIdFilter.create(FaultIdFilter.FilterType.EXACT, new HashSet<>()).apply(mockClusterRupture(1), false));
     }
 }
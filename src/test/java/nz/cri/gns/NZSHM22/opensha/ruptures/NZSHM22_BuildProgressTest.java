@@ -0,0 +1,68 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static nz.cri.gns.NZSHM22.opensha.ruptures.RuptureMocks.mockClusterRupture;
+import static org.junit.Assert.*;
+
+public class NZSHM22_BuildProgressTest {
+
+    /**
+     * Applies the filters like ClusterRuptureBuilder, stopping at the first hard stop.
+     */
+    protected static PlausibilityResult test(List<PlausibilityFilter> filters, ClusterRupture rupture) {
+        PlausibilityResult result = PlausibilityResult.PASS;
+        for (PlausibilityFilter filter : filters) {
+            result = result.logicalAnd(filter.apply(rupture, false));
+            if (!result.canContinue()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testProgress() throws Exception {
+        NZSHM22_BuildProgress progress = new NZSHM22_BuildProgress();
+        progress.start(10);
+        List<PlausibilityFilter> filters = progress.wrap(Arrays.asList(
+                FaultIdFilter.create(FaultIdFilter.FilterType.ANY, Sets.newHashSet(1)),
+                FaultIdFilter.create(FaultIdFilter.FilterType.WITHIN, Sets.newHashSet(1, 2))));
+        assertEquals(4, filters.size());
+
+        assertEquals(PlausibilityResult.PASS, test(filters, mockClusterRupture(1, 2)));
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE, test(filters, mockClusterRupture(2)));
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP, test(filters, mockClusterRupture(1, 3)));
+        assertEquals(PlausibilityResult.PASS, test(filters, mockClusterRupture(1)));
+
+        assertEquals(4, progress.getCandidates());
+        assertEquals(2, progress.getRupturesAccepted());
+        assertEquals(10, progress.getNumStartSections());
+        // the mocked sections all have id 0
+        assertEquals(1, progress.getStartSectionsProcessed());
+        assertTrue(progress.getEstimatedRemainingMillis() >= 0);
+
+        progress.cancel();
+        assertTrue(progress.isCancelled());
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP, test(filters, mockClusterRupture(1)));
+        assertEquals(4, progress.getCandidates());
+
+        progress.finish(2);
+        // a cancel stays visible until the next build starts
+        assertTrue(progress.isCancelled());
+        assertEquals(2, progress.getRupturesAccepted());
+        assertEquals(0, progress.getEstimatedRemainingMillis());
+
+        progress.reset();
+        assertFalse(progress.isCancelled());
+        assertEquals(0, progress.getCandidates());
+        assertEquals(PlausibilityResult.PASS, test(filters, mockClusterRupture(1)));
+    }
+}
@@ -0,0 +1,53 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import org.junit.Test;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class NZSHM22_FilterProfileTest {
+
+    @Test
+    public void testCounts() {
+        ClusterRupture pass = mock(ClusterRupture.class);
+        ClusterRupture future = mock(ClusterRupture.class);
+        ClusterRupture hard = mock(ClusterRupture.class);
+        PlausibilityFilter filter = mock(PlausibilityFilter.class);
+        when(filter.getShortName()).thenReturn("Mock");
+        when(filter.apply(pass, false)).thenReturn(PlausibilityResult.PASS);
+        when(filter.apply(future, false)).thenReturn(PlausibilityResult.FAIL_FUTURE_POSSIBLE);
+        when(filter.apply(hard, false)).thenReturn(PlausibilityResult.FAIL_HARD_STOP);
+
+        NZSHM22_FilterProfile profile = new NZSHM22_FilterProfile();
+        List<PlausibilityFilter> wrapped = profile.wrap(Arrays.asList(filter));
+        assertEquals(1, wrapped.size());
+        PlausibilityFilter profiled = wrapped.get(0);
+        assertEquals("Mock", profiled.getShortName());
+
+        assertEquals(PlausibilityResult.PASS, profiled.apply(pass, false));
+        assertEquals(PlausibilityResult.PASS, profiled.apply(pass, false));
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE, profiled.apply(future, false));
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP, profiled.apply(hard, false));
+
+        NZSHM22_FilterProfile.ProfiledFilter counts = profile.getFilters().get(0);
+        assertSame(filter, counts.getFilter());
+        assertEquals(4, counts.getCalls());
+        assertEquals(2, counts.getPassed());
+        assertEquals(1, counts.getFailedFuturePossible());
+        assertEquals(1, counts.getFailedHardStop());
+        assertTrue(counts.getNanos() >= 0);
+    }
+
+    @Test
+    public void testProfileFile() {
+        File rupSetFile = new File("/tmp/rupSet.zip");
+        assertEquals(new File("/tmp/rupSet_filter_profile.csv"), NZSHM22_FilterProfile.getProfileFile(rupSetFile));
+    }
+}
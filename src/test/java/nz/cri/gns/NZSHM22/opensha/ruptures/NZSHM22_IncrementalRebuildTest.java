@@ -0,0 +1,95 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.opensha.commons.geo.Location;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.Jump;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.plausibility.PlausibilityFilter;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.ClusterConnectionStrategy;
+import org.opensha.sha.faultSurface.FaultSection;
+import org.opensha.sha.faultSurface.FaultTrace;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static nz.cri.gns.NZSHM22.opensha.ruptures.RuptureMocks.mockClusterRupture;
+import static nz.cri.gns.NZSHM22.opensha.ruptures.RuptureMocks.mockFaultSubsectionCluster;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NZSHM22_IncrementalRebuildTest {
+
+    public FaultSection mockSection(int id, int parentId, double lat, double dip) {
+        FaultTrace trace = new FaultTrace("trace");
+        trace.add(new Location(lat, 170));
+        trace.add(new Location(lat + 0.1, 170));
+        FaultSection section = mock(FaultSection.class);
+        when(section.getSectionId()).thenReturn(id);
+        when(section.getParentSectionId()).thenReturn(parentId);
+        when(section.getFaultTrace()).thenReturn(trace);
+        when(section.getAveDip()).thenReturn(dip);
+        return section;
+    }
+
+    @Test
+    public void testChangedParents() {
+        List<FaultSection> oldSections = new ArrayList<>();
+        oldSections.add(mockSection(0, 1, -40, 60));
+        oldSections.add(mockSection(1, 1, -40.1, 60));
+        oldSections.add(mockSection(2, 2, -41, 60));
+        oldSections.add(mockSection(3, 3, -42, 60));
+        oldSections.add(mockSection(4, 4, -43, 60));
+
+        List<FaultSection> newSections = new ArrayList<>();
+        // parent 1 loses a subsection, which shifts the ids of all later subsections
+        newSections.add(mockSection(0, 1, -40, 60));
+        newSections.add(mockSection(1, 2, -41, 60));
+        // parent 3 has a new dip
+        newSections.add(mockSection(2, 3, -42, 70));
+        // parent 4 is removed, parent 5 is added
+        newSections.add(mockSection(3, 5, -44, 60));
+
+        assertEquals(Sets.newHashSet(1, 3, 4, 5),
+                NZSHM22_IncrementalRebuild.getChangedParents(oldSections, newSections));
+        assertEquals(Sets.newHashSet(),
+                NZSHM22_IncrementalRebuild.getChangedParents(oldSections, oldSections));
+    }
+
+    protected static void connect(FaultSubsectionCluster a, FaultSubsectionCluster b) {
+        a.addConnection(new Jump(a.startSect, a, b.startSect, b, 1));
+        b.addConnection(new Jump(b.startSect, b, a.startSect, a, 1));
+    }
+
+    @Test
+    public void testChangedParentFilter() throws Exception {
+        List<FaultSubsectionCluster> clusters = new ArrayList<>();
+        for (int parentId = 1; parentId <= 5; parentId++) {
+            clusters.add(mockFaultSubsectionCluster(parentId));
+        }
+        // 1 - 2 - 3, 2 - 4, and 5 on its own
+        connect(clusters.get(0), clusters.get(1));
+        connect(clusters.get(1), clusters.get(2));
+        connect(clusters.get(1), clusters.get(3));
+        ClusterConnectionStrategy connectionStrategy = mock(ClusterConnectionStrategy.class);
+        when(connectionStrategy.getClusters()).thenReturn(clusters);
+
+        assertEquals(Sets.newHashSet(1, 2, 3, 4),
+                NZSHM22_IncrementalRebuild.getAffectedParents(Sets.newHashSet(3), connectionStrategy));
+        PlausibilityFilter filter = new NZSHM22_IncrementalRebuild.ChangedParentFilter(Sets.newHashSet(3),
+                Sets.newHashSet(1, 2, 3, 4), connectionStrategy);
+
+        assertEquals(PlausibilityResult.PASS, filter.apply(mockClusterRupture(2, 3), false));
+        assertEquals(PlausibilityResult.PASS, filter.apply(mockClusterRupture(3, 2, 1), false));
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE, filter.apply(mockClusterRupture(1), false));
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE, filter.apply(mockClusterRupture(1, 2), false));
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE, filter.apply(mockClusterRupture(4, 2), false));
+        // 3 can only be reached through parents that the rupture already contains
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP, filter.apply(mockClusterRupture(1, 2, 4), false));
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP, filter.apply(mockClusterRupture(2, 1), false));
+        // outside the affected parents
+        assertEquals(PlausibilityResult.FAIL_HARD_STOP, filter.apply(mockClusterRupture(5), false));
+    }
+}
@@ -0,0 +1,45 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NZSHM22_RuptureSectionStoreTest {
+
+    @Test
+    public void testFromArrays() {
+        NZSHM22_RuptureSectionStore store = NZSHM22_RuptureSectionStore.fromArrays(new int[][]{
+                {1, 2, 3},
+                {},
+                {7}});
+
+        assertEquals(3, store.size());
+        assertEquals(ImmutableList.of(1, 2, 3), store.get(0));
+        assertEquals(ImmutableList.of(), store.get(1));
+        assertEquals(ImmutableList.of(7), store.get(2));
+        assertEquals(1, store.getNumSections(2));
+        assertArrayEquals(new int[]{1, 2, 3}, store.getSections(0));
+        assertEquals(4 * 4 + 4 * 4, store.getSizeInBytes());
+    }
+
+    @Test
+    public void testBuilder() {
+        NZSHM22_RuptureSectionStore.Builder builder = new NZSHM22_RuptureSectionStore.Builder();
+        for (int r = 0; r < 1000; r++) {
+            builder.add(ImmutableList.of(r, r + 1, r + 2));
+        }
+        List<List<Integer>> store = builder.build();
+
+        assertEquals(1000, store.size());
+        assertEquals(ImmutableList.of(0, 1, 2), store.get(0));
+        assertEquals(ImmutableList.of(999, 1000, 1001), store.get(999));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        NZSHM22_RuptureSectionStore.fromArrays(new int[][]{{1, 2}}).get(0).set(0, 5);
+    }
+}
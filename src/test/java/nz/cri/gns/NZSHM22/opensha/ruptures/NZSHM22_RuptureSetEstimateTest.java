@@ -0,0 +1,54 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import org.junit.Test;
+import org.opensha.sha.faultSurface.FaultSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NZSHM22_RuptureSetEstimateTest {
+
+    @Test
+    public void testEstimate() {
+        NZSHM22_RuptureSetEstimate estimate = new NZSHM22_RuptureSetEstimate(100, new int[]{10, 20, 30, 40}, 3);
+
+        assertEquals(100, estimate.getNumSampledRuptures());
+        assertEquals(2500, estimate.getEstimatedRuptures(), 1e-9);
+        // sd = 12.91, se = 100 * 12.91 / 2 * sqrt(96 / 99)
+        double standardError = 100 * Math.sqrt(500.0 / 3 / 4 * 96 / 99);
+        assertEquals(2500 - 1.96 * standardError, estimate.getLowerRuptures(), 1e-6);
+        assertEquals(2500 + 1.96 * standardError, estimate.getUpperRuptures(), 1e-6);
+
+        estimate.extrapolateResources(1000, 1000000, 500000, 200);
+        assertEquals(25000, estimate.getEstimatedBuildMillis());
+        assertEquals(2500, estimate.getBytesPerRupture(), 1e-9);
+    }
+
+    @Test
+    public void testFullSample() {
+        NZSHM22_RuptureSetEstimate estimate = new NZSHM22_RuptureSetEstimate(3, new int[]{1, 5, 9}, 2);
+
+        assertEquals(15, estimate.getEstimatedRuptures(), 1e-9);
+        assertEquals(15, estimate.getLowerRuptures(), 1e-9);
+        assertEquals(15, estimate.getUpperRuptures(), 1e-9);
+    }
+
+    @Test
+    public void testSampleSections() {
+        List<FaultSection> sections = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            FaultSection section = mock(FaultSection.class);
+            when(section.getSectionId()).thenReturn(i);
+            sections.add(section);
+        }
+        Set<Integer> sample = NZSHM22_RuptureSetEstimate.sampleSections(sections, 0.1, 42);
+        assertEquals(20, sample.size());
+        assertEquals(sample, NZSHM22_RuptureSetEstimate.sampleSections(sections, 0.1, 42));
+        assertEquals(1, NZSHM22_RuptureSetEstimate.sampleSections(sections, 0.0001, 42).size());
+    }
+}
@@ -0,0 +1,24 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.primitives.Doubles;
+import org.junit.Test;
+import org.opensha.commons.util.FaultUtils;
+
+import static org.junit.Assert.assertEquals;
+
+public class NZSHM22_SlipEnabledRuptureSetTest {
+
+    protected void assertAngleAverage(double[] scalars, double[] angles) {
+        assertEquals(FaultUtils.getScaledAngleAverage(Doubles.asList(scalars), Doubles.asList(angles)),
+                NZSHM22_SlipEnabledRuptureSet.getScaledAngleAverage(scalars, angles), 0);
+    }
+
+    @Test
+    public void testScaledAngleAverage() {
+        assertAngleAverage(new double[]{1, 2, 3}, new double[]{90, 90, 90});
+        assertAngleAverage(new double[]{1, 1}, new double[]{-170, 170});
+        assertAngleAverage(new double[]{2e6, 1e6}, new double[]{-90, 45});
+        assertAngleAverage(new double[]{1, 1}, new double[]{0, 180});
+        assertAngleAverage(new double[]{1.5, 2.5, 0.5}, new double[]{10, -30, 120});
+    }
+}
@@ -0,0 +1,31 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import nz.cri.gns.NZSHM22.opensha.enumTreeBranches.NZSHM22_FaultModels;
+import nz.cri.gns.NZSHM22.opensha.util.FaultSectionList;
+import org.dom4j.DocumentException;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class NZSHM22_SubSectioningTest {
+
+    @Test
+    public void testParallelMatchesSerial() throws DocumentException, IOException {
+        FaultSectionList parents = new FaultSectionList();
+        NZSHM22_FaultModels.CFM_0_9_SANSTVZ_D90.fetchFaultSections(parents);
+
+        FaultSectionList serial = NZSHM22_SubSectioning.buildSubSectionsSerially(parents, 0.5);
+        FaultSectionList parallel = NZSHM22_SubSectioning.buildSubSections(parents, 0.5);
+
+        assertEquals(serial.size(), parallel.size());
+        for (int s = 0; s < serial.size(); s++) {
+            assertEquals(s, parallel.get(s).getSectionId());
+            assertEquals(serial.get(s).getSectionId(), parallel.get(s).getSectionId());
+            assertEquals(serial.get(s).getParentSectionId(), parallel.get(s).getParentSectionId());
+            assertEquals(serial.get(s).getSectionName(), parallel.get(s).getSectionName());
+            assertEquals(serial.get(s).getFaultTrace(), parallel.get(s).getFaultTrace());
+        }
+    }
+}
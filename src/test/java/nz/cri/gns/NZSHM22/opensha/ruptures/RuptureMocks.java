@@ -0,0 +1,62 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.Jump;
+import org.opensha.sha.earthquake.faultSysSolution.ruptures.util.UniqueRupture;
+import org.opensha.sha.faultSurface.FaultSection;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mocked clusters, ruptures and jumps for rupture tests.
+ */
+public class RuptureMocks {
+
+    public static FaultSubsectionCluster mockFaultSubsectionCluster(int parentId) {
+        List<FaultSection> sections = new ArrayList<>();
+        FaultSection section = mock(FaultSection.class);
+        when(section.getParentSectionId()).thenReturn(parentId);
+        sections.add(section);
+        return new FaultSubsectionCluster(sections);
+    }
+
+    /**
+     * @param parentIds the parent of each cluster, in order
+     * @return a single strand rupture with one single-section cluster per parent
+     */
+    public static ClusterRupture mockClusterRupture(int... parentIds) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        FaultSubsectionCluster[] clusters = new FaultSubsectionCluster[parentIds.length];
+        for (int i = 0; i < clusters.length; i++) {
+            clusters[i] = mockFaultSubsectionCluster(parentIds[i]);
+        }
+        List<Integer> jumps = new LinkedList<>();
+        for (int i = 0; i < parentIds.length - 1; i++) {
+            jumps.add(i);
+        }
+        UniqueRupture u1 = mock(UniqueRupture.class);
+        when(u1.size()).thenReturn(parentIds.length - 1);
+        UniqueRupture u2 = mock(UniqueRupture.class);
+        when(u2.size()).thenReturn(parentIds.length - 1);
+
+        Constructor<ClusterRupture> con = ClusterRupture.class.getDeclaredConstructor(
+                FaultSubsectionCluster[].class, ImmutableList.class, ImmutableMap.class, UniqueRupture.class, UniqueRupture.class, Boolean.TYPE);
+        con.setAccessible(true);
+        return con.newInstance(clusters, ImmutableList.copyOf(jumps), ImmutableMap.of(), u1, u2, true);
+    }
+
+    public static Jump mockJump(int toParentId) {
+        FaultSubsectionCluster to = mockFaultSubsectionCluster(toParentId);
+        FaultSubsectionCluster from = mockFaultSubsectionCluster(0); // unused, only there for assertion in constructor
+        return new Jump(from.startSect, from, to.startSect, to, 0);
+    }
+}
@@ -11,6 +11,7 @@ import org.opensha.sha.earthquake.faultSysSolution.ruptures.ClusterRupture;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.ClusterConnectionStrategy;
 import org.opensha.sha.faultSurface.FaultSection;
+import scratch.UCERF3.inversion.laughTest.PlausibilityResult;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -48,6 +49,17 @@ public class RuptureThinningTest {
         assertEquals(4, actual.get(1).getTotalNumSects());
     }
 
+    @Test
+    public void asFilterTest() {
+        ClusterRupture rupture = mockRupture(4, mockSection(1, 1), mockSection(1, 2));
+
+        assertEquals(PlausibilityResult.PASS,
+                RuptureThinning.asFilter("thinning", r -> true).apply(rupture, false));
+        // ruptures that fail the predicate must be grown further
+        assertEquals(PlausibilityResult.FAIL_FUTURE_POSSIBLE,
+                RuptureThinning.asFilter("thinning", r -> false).apply(rupture, false));
+    }
+
     @Test
     public void coarsenessPredicateTest() {
         // accepts sizes 1, 2, 4, 7, 13, ...
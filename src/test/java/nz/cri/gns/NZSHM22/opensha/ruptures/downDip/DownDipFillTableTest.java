@@ -0,0 +1,23 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures.downDip;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DownDipFillTableTest {
+
+    @Test
+    public void testCount() {
+        // 3x3 with a hole at row 0, col 2
+        DownDipSubSectBuilder builder = DownDipMocks.mockDownDipBuilder(0, 3, 3, 0, 2);
+        DownDipFillTable table = new DownDipFillTable(builder);
+
+        assertEquals(8, table.getCount(0, 0, 3, 3));
+        assertEquals(1, table.getCount(0, 0, 1, 1));
+        assertEquals(0, table.getCount(0, 2, 1, 1));
+        assertEquals(1, table.getCount(0, 1, 1, 2));
+        assertEquals(1, table.getCount(1, 2, 1, 1));
+        assertEquals(5, table.getCount(0, 1, 3, 2));
+        assertEquals(6, table.getCount(1, 0, 2, 3));
+    }
+}
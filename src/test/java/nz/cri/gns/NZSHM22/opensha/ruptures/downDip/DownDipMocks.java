@@ -0,0 +1,53 @@
+package nz.cri.gns.NZSHM22.opensha.ruptures.downDip;
+
+import nz.cri.gns.NZSHM22.opensha.ruptures.DownDipFaultSection;
+import nz.cri.gns.NZSHM22.opensha.util.FaultSectionList;
+import org.opensha.sha.faultSurface.FaultSection;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mocked down-dip builders for down-dip tests.
+ */
+public class DownDipMocks {
+
+    public static DownDipSubSectBuilder mockDownDipBuilder(int parentId, int numRows, int numCols) {
+        return mockDownDipBuilder(parentId, numRows, numCols, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Mocks a builder with numRows x numCols sections, with no section at holeRow, holeCol.
+     */
+    public static DownDipSubSectBuilder mockDownDipBuilder(int parentId, int numRows, int numCols, int holeRow, int holeCol) {
+        DownDipSubSectBuilder builder = mock(DownDipSubSectBuilder.class);
+        when(builder.getParentID()).thenReturn(parentId);
+        when(builder.getNumRows()).thenReturn(numRows);
+        when(builder.getNumCols()).thenReturn(numCols);
+        FaultSectionList sections = new FaultSectionList();
+        when(builder.getSubSectsList()).thenReturn(sections);
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < numCols; c++) {
+                if (holeRow == r && holeCol == c) {
+                    when(builder.getSubSect(r, c)).thenReturn(null);
+                } else {
+                    FaultSection section = mockSection(parentId, sections.getSafeId(), builder);
+                    sections.add(section);
+                    when(builder.getRow(section)).thenReturn(r);
+                    when(builder.getColumn(section)).thenReturn(c);
+                    when(builder.getSubSect(r, c)).thenReturn(section);
+                }
+            }
+        }
+        return builder;
+    }
+
+    public static FaultSection mockSection(int parentID, int id, DownDipSubSectBuilder builder) {
+        DownDipFaultSection section = mock(DownDipFaultSection.class);
+        when(section.getParentSectionId()).thenReturn(parentID);
+        when(section.getSectionId()).thenReturn(id);
+        when(section.getAveDip()).thenReturn(10.0);
+        when(section.getBuilder()).thenReturn(builder);
+        return section;
+    }
+}
@@ -4,9 +4,6 @@ import static org.junit.Assert.*;
 
 import com.google.common.collect.Lists;
 
-import nz.cri.gns.NZSHM22.opensha.ruptures.DownDipFaultSection;
-import nz.cri.gns.NZSHM22.opensha.util.FaultSectionList;
-
 import org.junit.Test;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.FaultSubsectionCluster;
 import org.opensha.sha.earthquake.faultSysSolution.ruptures.strategies.ExhaustiveUnilateralRuptureGrowingStrategy;
@@ -15,8 +12,7 @@ import org.opensha.sha.faultSurface.FaultSection;
 import java.util.ArrayList;
 import java.util.List;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static nz.cri.gns.NZSHM22.opensha.ruptures.downDip.DownDipMocks.mockDownDipBuilder;
 
 public class DownDipTestPermutationStrategyTest {
 
@@ -331,31 +327,24 @@ public class DownDipTestPermutationStrategyTest {
         assertEquals(expected, simplifyPermutations(actual));
     }
 
-    public DownDipSubSectBuilder mockDownDipBuilder(int parentId, int numRows, int numCols) {
-        return mockDownDipBuilder(parentId, numRows, numCols, Integer.MAX_VALUE, Integer.MAX_VALUE);
-    }
+    @Test
+    public void testPermutationsAreShared() {
+        ExhaustiveUnilateralRuptureGrowingStrategy ucerf3Strategy = new ExhaustiveUnilateralRuptureGrowingStrategy();
+        DownDipSubSectBuilder builder = mockDownDipBuilder(0, 3, 3);
+        FaultSubsectionCluster cluster = new FaultSubsectionCluster(builder.getSubSectsList());
+        DownDipPermutationStrategy strategy = new DownDipPermutationStrategy(ucerf3Strategy);
 
-    public DownDipSubSectBuilder mockDownDipBuilder(int parentId, int numRows, int numCols, int holeRow, int holeCol) {
-        DownDipSubSectBuilder builder = mock(DownDipSubSectBuilder.class);
-        when(builder.getParentID()).thenReturn(parentId);
-        when(builder.getNumRows()).thenReturn(numRows);
-        when(builder.getNumCols()).thenReturn(numCols);
-        FaultSectionList sections = new FaultSectionList();
-        when(builder.getSubSectsList()).thenReturn(sections);
-        for (int r = 0; r < numRows; r++) {
-            for (int c = 0; c < numCols; c++) {
-                if (holeRow == r && holeCol == c) {
-                    when(builder.getSubSect(r, c)).thenReturn(null);
-                } else {
-                    FaultSection section = mockSection(parentId, sections.getSafeId(), builder);
-                    sections.add(section);
-                    when(builder.getRow(section)).thenReturn(r);
-                    when(builder.getColumn(section)).thenReturn(c);
-                    when(builder.getSubSect(r, c)).thenReturn(section);
-                }
-            }
+        List<FaultSubsectionCluster> first = strategy.getVariations(cluster, builder.getSubSect(1, 1));
+        List<FaultSubsectionCluster> second = strategy.getVariations(cluster, builder.getSubSect(1, 1));
+        assertNotSame(first, second);
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
         }
-        return builder;
+
+        // the returned list is a copy
+        second.clear();
+        assertEquals(first.size(), strategy.getVariations(cluster, builder.getSubSect(1, 1)).size());
     }
 
     public List<List<Integer>> simplifyPermutations(List<FaultSubsectionCluster> permutations) {
@@ -370,15 +359,6 @@ public class DownDipTestPermutationStrategyTest {
         return result;
     }
 
-    public FaultSection mockSection(int parentID, int id, DownDipSubSectBuilder builder) {
-        DownDipFaultSection section = mock(DownDipFaultSection.class);
-        when(section.getParentSectionId()).thenReturn(parentID);
-        when(section.getSectionId()).thenReturn(id);
-        when(section.getAveDip()).thenReturn(10.0);
-        when(section.getBuilder()).thenReturn(builder);
-        return section;
-    }
-
 //    public DownDipRegistry mockDownDipRegistry(DownDipSubSectBuilder builder) {
 //        DownDipRegistry registry = mock(DownDipRegistry.class);
 //        when(registry.getBuilder(builder.getParentID())).thenReturn(builder);